@@ -1,18 +1,34 @@
 package net.stuchl4n3k.lunchtime;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import net.stuchl4n3k.lunchtime.classifier.ANN;
+import net.stuchl4n3k.lunchtime.classifier.Features;
 import net.stuchl4n3k.lunchtime.classifier.Label;
 import net.stuchl4n3k.lunchtime.classifier.Sample;
 import net.stuchl4n3k.lunchtime.classifier.SampleFactory;
+import net.stuchl4n3k.lunchtime.classifier.TrainingReport;
 import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvANN;
+import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvANNQuantizer;
+import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvEnsembleANN;
+import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvFeatures;
+import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvSampleDeduplicator;
 import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvSampleFactory;
+import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvTrainingParams;
+import net.stuchl4n3k.lunchtime.classifier.impl.quantized.QuantizedANN;
+import net.stuchl4n3k.lunchtime.classifier.store.FeatureStore;
+import net.stuchl4n3k.lunchtime.classifier.store.FeatureStoreWriter;
+import net.stuchl4n3k.lunchtime.classifier.util.CvUtils;
 import net.stuchl4n3k.lunchtime.classifier.util.IoUtils;
-import nu.pattern.OpenCV;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 
@@ -28,12 +44,6 @@ import org.opencv.core.Mat;
 @Slf4j
 public class Main {
 
-    // Load OpenCV native libraries.
-    static {
-        OpenCV.loadShared();
-        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
-    }
-
     // Parametrization:
     public static final int SAMPLE_W = 10;
     public static final int SAMPLE_H = 7;
@@ -44,8 +54,52 @@ public class Main {
 
     private static SampleFactory sampleFactory = new CvSampleFactory();
 
+    public static final String MODE_QUANTIZE = "quantize";
+    public static final String MODE_STORE = "store";
+    public static final String MODE_TELEMETRY = "telemetry";
+    public static final String MODE_ENSEMBLE = "ensemble";
+    public static final int[] ENSEMBLE_SIZES = {1, 3, 5, 9, 15};
+    public static final int ENSEMBLE_REPEATS = 3;
+    public static final String MODE_DEDUP = "dedup";
+    public static final double[] DEDUP_DISTANCES = {0, 0.01, 0.02, 0.04, 0.08};
+    public static final int STORE_CHUNK_SIZE = 64;
+
     public static void main(String[] args) {
+        CvUtils.loadNativeLibraries();
+
         int numIterations = 10;
+        if (args.length > 0 && MODE_QUANTIZE.equals(args[0])) {
+            evaluateQuantization(numIterations);
+            return;
+        }
+        if (args.length > 0 && MODE_DEDUP.equals(args[0])) {
+            evaluateDeduplication(numIterations);
+            return;
+        }
+        if (args.length > 0 && MODE_ENSEMBLE.equals(args[0])) {
+            evaluateEnsembles(numIterations);
+            return;
+        }
+        if (args.length > 0 && MODE_TELEMETRY.equals(args[0])) {
+            // Optional arguments: epsilon, max iterations, iterations per epoch.
+            CvTrainingParams params = new CvTrainingParams();
+            if (args.length > 1) {
+                params.setEpsilon(Double.parseDouble(args[1]));
+            }
+            if (args.length > 2) {
+                params.setMaxIterations(Integer.parseInt(args[2]));
+            }
+            if (args.length > 3) {
+                params.setIterationsPerEpoch(Integer.parseInt(args[3]));
+            }
+            evaluateTrainingTelemetry(params);
+            return;
+        }
+        if (args.length > 0 && MODE_STORE.equals(args[0])) {
+            evaluateFeatureStore(new File(args.length > 1 ? args[1] : "training_dataset.features"), numIterations);
+            return;
+        }
+
         double tstErrRateSum = 0;
         for (int i = 0; i < numIterations; i++) {
             tstErrRateSum += trainAndTestMlp();
@@ -70,29 +124,317 @@ public class Main {
         List<String> trnInputFiles = inputFiles.subList(0, splitPos);
         List<String> tstInputFiles = inputFiles.subList(splitPos, inputFiles.size());
 
+        ANN ann = trainMlp(trnInputFiles);
+
+        // Compute MLP error rate on train and test data.
+        double trnErrRate = computeErrorRate(ann, trnInputFiles);
+        double tstErrRate = computeErrorRate(ann, tstInputFiles);
+
+        System.err.println(String.format("Error rate on train data: %f", trnErrRate));
+        System.err.println(String.format("Error rate on test data: %f", tstErrRate));
+
+//        CvUtils.openAsImage(createClassificationRaster(ann, tstInputFiles));
+//        System.exit(0);
+
+        return tstErrRate;
+    }
+
+    /**
+     * Trains a new MLP on given {@code trnInputFiles}.
+     */
+    public static CvANN trainMlp(List<String> trnInputFiles) {
         // Init MLP: NUM_NEURONS_INPUT x NUM_NEURONS_HIDDEN_LAYER x NUM_NEURONS_OUTPUT.
-        ANN ann = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
+        CvANN ann = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
 
         // MLP training.
         System.err.println("Training in progress...");
         trnInputFiles.forEach(path -> {
-            Sample sample = sampleFactory.createLabeledSample(path.toString(), SAMPLE_W, SAMPLE_H);
+            Sample sample = sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H);
             ann.addTrainingSample(sample);
         });
         int iterationsCounter = ann.train();
         System.err.println(String.format("Done after %d iterations", iterationsCounter));
+        return ann;
+    }
 
-        // Compute MLP error rate on train and test data.
-        double trnErrRate = computeErrorRate(ann, trnInputFiles);
-        double tstErrRate = computeErrorRate(ann, tstInputFiles);
+    /**
+     * Reports the share of kept training samples, deduplication time, training time and error rate on test data
+     * of MLPs trained on samples deduplicated by {@link CvSampleDeduplicator} with {@link #DEDUP_DISTANCES} max
+     * distances (0 means no deduplication), each over the same random splits of samples.
+     */
+    public static void evaluateDeduplication(int numIterations) {
+        List<String> inputFiles = IoUtils.findInputFiles(new File("training_dataset"));
+        int splitPos = (int) Math.ceil(inputFiles.size() * PERCENT_TRN_SAMPLES);
 
-        System.err.println(String.format("Error rate on train data: %f", trnErrRate));
-        System.err.println(String.format("Error rate on test data: %f", tstErrRate));
+        double[] keptSums = new double[DEDUP_DISTANCES.length];
+        long[] dedupNanosSums = new long[DEDUP_DISTANCES.length];
+        long[] trainingNanosSums = new long[DEDUP_DISTANCES.length];
+        double[] tstErrRateSums = new double[DEDUP_DISTANCES.length];
 
-//        CvUtils.openAsImage(createClassificationRaster(ann, tstInputFiles));
-//        System.exit(0);
+        for (int iteration = 0; iteration < numIterations; iteration++) {
+            Collections.shuffle(inputFiles);
+            List<String> trnInputFiles = inputFiles.subList(0, splitPos);
+            List<String> tstInputFiles = inputFiles.subList(splitPos, inputFiles.size());
 
-        return tstErrRate;
+            // Keep the original (chronological) order of training frames, that is what archives look like.
+            List<Sample> trnSamples = trnInputFiles.stream().sorted()
+                .map(path -> sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H))
+                .collect(Collectors.toList());
+
+            for (int i = 0; i < DEDUP_DISTANCES.length; i++) {
+                long start = System.nanoTime();
+                List<Sample> samples = trnSamples;
+                if (DEDUP_DISTANCES[i] > 0) {
+                    CvSampleDeduplicator deduplicator = new CvSampleDeduplicator(DEDUP_DISTANCES[i]);
+                    trnSamples.forEach(deduplicator::add);
+                    samples = deduplicator.getSamples();
+                }
+                dedupNanosSums[i] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                ANN ann = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
+                samples.forEach(ann::addTrainingSample);
+                ann.train();
+                trainingNanosSums[i] += System.nanoTime() - start;
+
+                keptSums[i] += (double) samples.size() / trnSamples.size();
+                tstErrRateSums[i] += computeErrorRate(ann, tstInputFiles);
+            }
+        }
+
+        System.err.println("#######################################");
+        System.err.println(String.format("%8s %8s %10s %10s %10s", "distance", "kept", "dedup us", "train us", "mean err"));
+        for (int i = 0; i < DEDUP_DISTANCES.length; i++) {
+            System.err.println(String.format("%8.2f %8.3f %10d %10d %10.4f", DEDUP_DISTANCES[i], keptSums[i] / numIterations,
+                TimeUnit.NANOSECONDS.toMicros(dedupNanosSums[i] / numIterations), TimeUnit.NANOSECONDS.toMicros(trainingNanosSums[i] / numIterations),
+                tstErrRateSums[i] / numIterations));
+        }
+    }
+
+    /**
+     * Reports mean error rate on test data, its standard deviation across splits and across {@link #ENSEMBLE_REPEATS}
+     * trainings on the same split, training time and inference time of {@link CvEnsembleANN} for growing ensemble
+     * sizes and both combination methods, all over the same random splits of samples.
+     */
+    public static void evaluateEnsembles(int numIterations) {
+        List<String> inputFiles = IoUtils.findInputFiles(new File("training_dataset"));
+        int splitPos = (int) Math.ceil(inputFiles.size() * PERCENT_TRN_SAMPLES);
+
+        CvEnsembleANN.Combination[] combinations = CvEnsembleANN.Combination.values();
+        int numConfigs = combinations.length * ENSEMBLE_SIZES.length;
+        // Error rates per configuration, split and repeat.
+        double[][][] tstErrRates = new double[numConfigs][numIterations][ENSEMBLE_REPEATS];
+        long[] trainingNanosSums = new long[numConfigs];
+        double[] singleMicrosSums = new double[numConfigs];
+        double[] batchMicrosSums = new double[numConfigs];
+
+        for (int iteration = 0; iteration < numIterations; iteration++) {
+            // All configurations are evaluated on the same split, so that they are comparable.
+            Collections.shuffle(inputFiles);
+            List<String> trnInputFiles = new ArrayList<>(inputFiles.subList(0, splitPos));
+            List<String> tstInputFiles = new ArrayList<>(inputFiles.subList(splitPos, inputFiles.size()));
+
+            List<Sample> trnSamples = trnInputFiles.stream()
+                .map(path -> sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H))
+                .collect(Collectors.toList());
+            List<Sample> tstSamples = new ArrayList<>();
+            Mat tstBatch = new Mat();
+            tstInputFiles.forEach(path -> {
+                Sample sample = sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H);
+                tstSamples.add(sample);
+                tstBatch.push_back((Mat) sample.getFeatures().getValue());
+            });
+            Features batchFeatures = new CvFeatures(tstBatch);
+
+            for (int c = 0; c < numConfigs; c++) {
+                CvEnsembleANN.Combination combination = combinations[c / ENSEMBLE_SIZES.length];
+                int numMembers = ENSEMBLE_SIZES[c % ENSEMBLE_SIZES.length];
+
+                for (int repeat = 0; repeat < ENSEMBLE_REPEATS; repeat++) {
+                    CvEnsembleANN ann = new CvEnsembleANN(numMembers, NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT, combination);
+                    trnSamples.forEach(ann::addTrainingSample);
+                    long start = System.nanoTime();
+                    ann.train();
+                    trainingNanosSums[c] += System.nanoTime() - start;
+
+                    tstErrRates[c][iteration][repeat] = computeErrorRate(ann, tstInputFiles);
+                    if (repeat == 0) {
+                        singleMicrosSums[c] += measureMicrosPerSample(tstSamples, sample -> ann.predict(sample.getFeatures()));
+                        batchMicrosSums[c] += measureMicrosPerSample(Collections.singletonList(batchFeatures), ann::predict) / tstSamples.size();
+                    }
+                }
+            }
+        }
+
+        System.err.println("#######################################");
+        System.err.println(String.format("%-9s %3s %10s %10s %10s %10s %10s %10s", "combine", "N", "mean err", "split std", "init std",
+            "train ms", "single us", "batch us"));
+        for (int c = 0; c < numConfigs; c++) {
+            // Split std: deviation of per-split means. Init std: deviation over repeats on the same split, averaged.
+            double[] splitMeans = Arrays.stream(tstErrRates[c]).mapToDouble(Main::mean).toArray();
+            double initStd = Arrays.stream(tstErrRates[c]).mapToDouble(Main::std).average().orElse(Double.NaN);
+            System.err.println(String.format("%-9s %3d %10.4f %10.4f %10.4f %10d %10.3f %10.3f",
+                combinations[c / ENSEMBLE_SIZES.length], ENSEMBLE_SIZES[c % ENSEMBLE_SIZES.length], mean(splitMeans), std(splitMeans), initStd,
+                TimeUnit.NANOSECONDS.toMillis(trainingNanosSums[c] / numIterations / ENSEMBLE_REPEATS),
+                singleMicrosSums[c] / numIterations, batchMicrosSums[c] / numIterations));
+        }
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(Double.NaN);
+    }
+
+    private static double std(double[] values) {
+        double mean = mean(values);
+        return Math.sqrt(Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / values.length);
+    }
+
+    /**
+     * Trains an MLP on a random split of samples with given {@code params} and prints its per-epoch telemetry
+     * and error rate on test data.
+     */
+    public static void evaluateTrainingTelemetry(CvTrainingParams params) {
+        List<String> inputFiles = IoUtils.findInputFiles(new File("training_dataset"));
+        int splitPos = (int) Math.ceil(inputFiles.size() * PERCENT_TRN_SAMPLES);
+        Collections.shuffle(inputFiles);
+        List<String> trnInputFiles = inputFiles.subList(0, splitPos);
+        List<String> tstInputFiles = inputFiles.subList(splitPos, inputFiles.size());
+
+        CvANN ann = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
+        trnInputFiles.forEach(path -> ann.addTrainingSample(sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H)));
+        TrainingReport report = ann.train(params);
+
+        report.getEpochs().forEach(System.err::println);
+        System.err.println("#######################################");
+        System.err.println(String.format("Training %s", report));
+        System.err.println(String.format("Error rate on test data: %f", computeErrorRate(ann, tstInputFiles)));
+    }
+
+    /**
+     * Compares float inference of {@link CvANN} with its {@link QuantizedANN} export on random splits of samples
+     * and reports the difference in error rate on test data, the prediction agreement and the inference time.
+     */
+    public static void evaluateQuantization(int numIterations) {
+        List<String> inputFiles = IoUtils.findInputFiles(new File("training_dataset"));
+        int splitPos = (int) Math.ceil(inputFiles.size() * PERCENT_TRN_SAMPLES);
+
+        double errRateDeltaSum = 0;
+        double agreementSum = 0;
+        double floatMicrosSum = 0;
+        double quantizedMicrosSum = 0;
+
+        for (int iteration = 0; iteration < numIterations; iteration++) {
+            Collections.shuffle(inputFiles);
+            List<String> trnInputFiles = inputFiles.subList(0, splitPos);
+            List<String> tstInputFiles = inputFiles.subList(splitPos, inputFiles.size());
+
+            CvANN ann = trainMlp(trnInputFiles);
+            QuantizedANN quantizedAnn = CvANNQuantizer.quantize(ann);
+
+            List<Sample> tstSamples = new ArrayList<>();
+            List<byte[]> tstPixels = new ArrayList<>();
+            tstInputFiles.forEach(path -> {
+                tstSamples.add(sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H));
+                tstPixels.add(CvUtils.loadPixels(path, SAMPLE_W, SAMPLE_H));
+            });
+
+            int floatErrCount = 0;
+            int quantizedErrCount = 0;
+            int agreementCount = 0;
+            for (int i = 0; i < tstSamples.size(); i++) {
+                Sample sample = tstSamples.get(i);
+                int expClass = (int) ((Mat) sample.getLabel().getValue()).get(0, 0)[0];
+                int floatClass = (int) ((Mat) ann.predict(sample.getFeatures()).getValue()).get(0, 0)[0];
+                int quantizedClass = quantizedAnn.predict(tstPixels.get(i));
+
+                floatErrCount += floatClass != expClass ? 1 : 0;
+                quantizedErrCount += quantizedClass != expClass ? 1 : 0;
+                agreementCount += floatClass == quantizedClass ? 1 : 0;
+            }
+
+            double floatErrRate = (double) floatErrCount / tstSamples.size();
+            double quantizedErrRate = (double) quantizedErrCount / tstSamples.size();
+            double agreement = (double) agreementCount / tstSamples.size();
+            double floatMicros = measureMicrosPerSample(tstSamples, sample -> ann.predict(sample.getFeatures()));
+            double quantizedMicros = measureMicrosPerSample(tstPixels, quantizedAnn::predict);
+            System.err.println(String.format("Error rate on test data: float %f, quantized %f, agreement %f",
+                floatErrRate, quantizedErrRate, agreement));
+
+            errRateDeltaSum += quantizedErrRate - floatErrRate;
+            agreementSum += agreement;
+            floatMicrosSum += floatMicros;
+            quantizedMicrosSum += quantizedMicros;
+        }
+
+        System.err.println("#######################################");
+        System.err.println(String.format("Mean error rate delta (quantized - float): %+.4f", errRateDeltaSum / numIterations));
+        System.err.println(String.format("Mean prediction agreement: %.4f", agreementSum / numIterations));
+        System.err.println(String.format("Mean inference time: float %.3f us, quantized %.3f us",
+            floatMicrosSum / numIterations, quantizedMicrosSum / numIterations));
+    }
+
+    /**
+     * Measures mean time of a given {@code prediction} over {@code inputs}, after a warm-up round.
+     */
+    private static <T> double measureMicrosPerSample(List<T> inputs, Consumer<T> prediction) {
+        int numRounds = 1000;
+        for (int round = 0; round < numRounds; round++) {
+            inputs.forEach(prediction);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < numRounds; round++) {
+            inputs.forEach(prediction);
+        }
+        return (System.nanoTime() - start) / 1000.0 / numRounds / inputs.size();
+    }
+
+    /**
+     * Converts {@code training_dataset} to a {@link FeatureStore} in a given {@code storeFile} and reports mean
+     * error rate on train data of {@code numIterations} MLPs trained from the store at once and in chunks of
+     * {@link #STORE_CHUNK_SIZE} samples.
+     */
+    public static void evaluateFeatureStore(File storeFile, int numIterations) {
+        List<String> inputFiles = IoUtils.findInputFiles(new File("training_dataset"));
+        long start = System.nanoTime();
+        createFeatureStore(inputFiles, storeFile);
+        System.err.println(String.format("Stored %d samples to '%s' in %d ms", inputFiles.size(), storeFile,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+        try (FeatureStore store = FeatureStore.open(storeFile)) {
+            for (int chunkSize : new int[]{store.getCount(), STORE_CHUNK_SIZE}) {
+                long iterationsSum = 0;
+                long trainingNanosSum = 0;
+                double trnErrRateSum = 0;
+                for (int i = 0; i < numIterations; i++) {
+                    CvANN ann = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
+                    start = System.nanoTime();
+                    iterationsSum += chunkSize == store.getCount() ? ann.train(store) : ann.train(store, chunkSize);
+                    trainingNanosSum += System.nanoTime() - start;
+                    trnErrRateSum += computeErrorRate(ann, inputFiles);
+                }
+                System.err.println(String.format("Chunk size %d: %d iterations in %d ms, mean error rate on train data: %f",
+                    chunkSize, iterationsSum / numIterations, TimeUnit.NANOSECONDS.toMillis(trainingNanosSum / numIterations),
+                    trnErrRateSum / numIterations));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes labeled samples of given {@code inputFiles} to a {@link FeatureStore} in {@code storeFile}.
+     */
+    public static void createFeatureStore(List<String> inputFiles, File storeFile) {
+        float[] features = new float[NUM_NEURONS_INPUT];
+        try (FeatureStoreWriter writer = new FeatureStoreWriter(storeFile, SAMPLE_W, SAMPLE_H)) {
+            for (String path : inputFiles) {
+                Sample sample = sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H);
+                ((Mat) sample.getFeatures().getValue()).get(0, 0, features);
+                writer.append(features, (float) ((Mat) sample.getLabel().getValue()).get(0, 0)[0]);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
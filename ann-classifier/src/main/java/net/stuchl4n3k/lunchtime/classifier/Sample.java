@@ -3,19 +3,28 @@ package net.stuchl4n3k.lunchtime.classifier;
 /**
  * A tuple of {@link Features} and a corresponding {@link Label}.
  * <p>
- *     Typically used to represent a training data sample.
+ *     Typically used to represent a training data sample. A sample may carry a training weight,
+ *     e.g. the number of near-identical samples it stands for.
  * </p>
  *
  * @author petr.stuchlik
  */
 public class Sample {
 
+    public static final double DEFAULT_WEIGHT = 1;
+
     private final Features features;
     private final Label label;
+    private final double weight;
 
     public Sample(Features features, Label label) {
+        this(features, label, DEFAULT_WEIGHT);
+    }
+
+    public Sample(Features features, Label label, double weight) {
         this.features = features;
         this.label = label;
+        this.weight = weight;
     }
 
     public Features getFeatures() {
@@ -25,4 +34,8 @@ public class Sample {
     public Label getLabel() {
         return label;
     }
+
+    public double getWeight() {
+        return weight;
+    }
 }
@@ -0,0 +1,68 @@
+package net.stuchl4n3k.lunchtime.classifier;
+
+/**
+ * Telemetry of a single training epoch.
+ *
+ * @author petr.stuchlik
+ */
+public class TrainingEpoch {
+
+    private final int epoch;
+    private final int iterations;
+    private final double trainingLoss;
+    private final double validationLoss;
+    private final double validationErrorRate;
+    private final long wallTimeMicros;
+
+    public TrainingEpoch(int epoch, int iterations, double trainingLoss, double validationLoss,
+                         double validationErrorRate, long wallTimeMicros) {
+        this.epoch = epoch;
+        this.iterations = iterations;
+        this.trainingLoss = trainingLoss;
+        this.validationLoss = validationLoss;
+        this.validationErrorRate = validationErrorRate;
+        this.wallTimeMicros = wallTimeMicros;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Mean squared error on training data.
+     */
+    public double getTrainingLoss() {
+        return trainingLoss;
+    }
+
+    /**
+     * Mean squared error on validation data or {@code NaN} if there is none.
+     */
+    public double getValidationLoss() {
+        return validationLoss;
+    }
+
+    /**
+     * Error rate on validation data or {@code NaN} if there is none.
+     */
+    public double getValidationErrorRate() {
+        return validationErrorRate;
+    }
+
+    /**
+     * Wall time spent in training during this epoch, evaluation excluded.
+     */
+    public long getWallTimeMicros() {
+        return wallTimeMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("epoch %3d: %4d iterations, %7d us, trn loss %.5f, val loss %.5f, val err %.4f",
+            epoch, iterations, wallTimeMicros, trainingLoss, validationLoss, validationErrorRate);
+    }
+}
@@ -0,0 +1,65 @@
+package net.stuchl4n3k.lunchtime.classifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a training run: per-epoch telemetry, the reason training stopped and the epoch whose
+ * model was kept.
+ *
+ * @author petr.stuchlik
+ */
+public class TrainingReport {
+
+    public enum StopReason {
+        /** The change of training error dropped below epsilon. */
+        CONVERGED,
+        /** The maximal number of iterations was reached. */
+        MAX_ITERATIONS,
+        /** The monitored loss did not improve for a number of epochs. */
+        EARLY_STOPPED
+    }
+
+    private final List<TrainingEpoch> epochs = new ArrayList<>();
+    private StopReason stopReason;
+    private int bestEpoch;
+
+    public void addEpoch(TrainingEpoch epoch) {
+        epochs.add(epoch);
+    }
+
+    public List<TrainingEpoch> getEpochs() {
+        return Collections.unmodifiableList(epochs);
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public void setStopReason(StopReason stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    public int getBestEpoch() {
+        return bestEpoch;
+    }
+
+    public void setBestEpoch(int bestEpoch) {
+        this.bestEpoch = bestEpoch;
+    }
+
+    public int getIterations() {
+        return epochs.stream().mapToInt(TrainingEpoch::getIterations).sum();
+    }
+
+    public long getWallTimeMicros() {
+        return epochs.stream().mapToLong(TrainingEpoch::getWallTimeMicros).sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s after %d epochs (%d iterations, %d us), kept epoch %d",
+            stopReason, epochs.size(), getIterations(), getWallTimeMicros(), bestEpoch);
+    }
+}
@@ -1,16 +1,28 @@
 package net.stuchl4n3k.lunchtime.classifier.impl.opencv;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import net.stuchl4n3k.lunchtime.classifier.ANN;
 import net.stuchl4n3k.lunchtime.classifier.Features;
 import net.stuchl4n3k.lunchtime.classifier.Label;
 import net.stuchl4n3k.lunchtime.classifier.Sample;
+import net.stuchl4n3k.lunchtime.classifier.TrainingEpoch;
+import net.stuchl4n3k.lunchtime.classifier.TrainingReport;
+import net.stuchl4n3k.lunchtime.classifier.store.FeatureStore;
+import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfInt;
+import org.opencv.core.TermCriteria;
 import org.opencv.ml.CvANN_MLP;
+import org.opencv.ml.CvANN_MLP_TrainParams;
 
 /**
  * Artificial neural network representation.
@@ -25,6 +37,9 @@ import org.opencv.ml.CvANN_MLP;
 public class CvANN implements ANN {
 
     public static final int NATIVE_DATA_TYPE = CvType.CV_32F;
+    public static final int STORE_BLOCK_ROWS = 4096;
+    public static final int DEFAULT_STORE_PASSES = 20;
+    public static final int DEFAULT_STORE_ITERATIONS_PER_CHUNK = 5;
 
     protected final int[] numNeuronsInLayers;
     protected final int numNeuronsInOutput;
@@ -56,27 +71,256 @@ public class CvANN implements ANN {
     public int train() {
         Mat inputRowVectors = new Mat();
         Mat outputRowVectors = new Mat();
-        Mat sampleWeightVectors = Mat.ones(trainingSamples.size(), 1, NATIVE_DATA_TYPE);
+        Mat sampleWeightVectors = toRowVectors(trainingSamples, inputRowVectors, outputRowVectors);
 
-        for (int i = 0; i < trainingSamples.size(); i++) {
-            Sample sample = trainingSamples.get(i);
+        trainingSamples.clear();
 
-            inputRowVectors.push_back((Mat) sample.getFeatures().getValue());
-            outputRowVectors.push_back((Mat) sample.getLabel().getValue());
+        LOG.debug("inputRowVectors: \n{}", toString(inputRowVectors));
+        LOG.debug("outputRowVectors: \n{}", toString(outputRowVectors));
 
-            // Adjust weight of this sample.
-            double sampleWeight = adjustTrainingSampleWeight(sample);
-            sampleWeightVectors.put(i, 0, sampleWeight);
+        return mlp.train(inputRowVectors, outputRowVectors, sampleWeightVectors);
+    }
+
+    /**
+     * Invokes training on all previously given training samples in epochs, recording loss and wall time of each.
+     * <p>
+     * A random {@link CvTrainingParams#getValidationFraction()} of training samples is held out for validation
+     * (see {@link CvTrainingParams#getSeed()}).
+     * Each epoch continues from the weights of the previous one (see {@link CvANN_MLP#UPDATE_WEIGHTS}), note that
+     * RPROP step sizes start over each epoch. If training stops after the monitored loss stopped improving,
+     * the model of the best epoch is restored.
+     * </p>
+     */
+    public TrainingReport train(CvTrainingParams params) {
+        // Samples usually come in directory order, the validation set must not depend on it.
+        List<Sample> shuffledSamples = new ArrayList<>(trainingSamples);
+        Collections.shuffle(shuffledSamples, new Random(params.getSeed()));
+        int numValidation = (int) Math.round(shuffledSamples.size() * params.getValidationFraction());
+        int numTraining = shuffledSamples.size() - numValidation;
+
+        Mat trnInputs = new Mat();
+        Mat trnOutputs = new Mat();
+        Mat trnWeights = toRowVectors(shuffledSamples.subList(0, numTraining), trnInputs, trnOutputs);
+        Mat valInputs = new Mat();
+        Mat valOutputs = new Mat();
+        if (numValidation > 0) {
+            toRowVectors(shuffledSamples.subList(numTraining, shuffledSamples.size()), valInputs, valOutputs);
         }
 
         trainingSamples.clear();
 
-        LOG.debug("inputRowVectors: \n{}", toString(inputRowVectors));
-        LOG.debug("outputRowVectors: \n{}", toString(outputRowVectors));
+        LOG.debug("Training on {} samples, validating on {} samples with {}", numTraining, numValidation, params);
+
+        TrainingReport report = new TrainingReport();
+        report.setStopReason(TrainingReport.StopReason.MAX_ITERATIONS);
+        double bestLoss = Double.POSITIVE_INFINITY;
+        int epochsWithoutImprovement = 0;
+        File bestModel = null;
+
+        try {
+            int totalIterations = 0;
+            for (int epoch = 0; totalIterations < params.getMaxIterations(); epoch++) {
+                int maxEpochIterations = Math.min(params.getIterationsPerEpoch(), params.getMaxIterations() - totalIterations);
+                int flags = epoch == 0 ? 0 : CvANN_MLP.UPDATE_WEIGHTS;
+
+                long start = System.nanoTime();
+                int iterations = mlp.train(trnInputs, trnOutputs, trnWeights, new Mat(), params.toTrainParams(maxEpochIterations), flags);
+                long wallTimeMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                totalIterations += iterations;
+
+                double trnLoss = computeLoss(trnInputs, trnOutputs);
+                double valLoss = numValidation > 0 ? computeLoss(valInputs, valOutputs) : Double.NaN;
+                double valErrRate = numValidation > 0 ? computeErrorRate(valInputs, valOutputs) : Double.NaN;
+                TrainingEpoch trainingEpoch = new TrainingEpoch(epoch, iterations, trnLoss, valLoss, valErrRate, wallTimeMicros);
+                report.addEpoch(trainingEpoch);
+                LOG.debug("{}", trainingEpoch);
+
+                double monitoredLoss = numValidation > 0 ? valLoss : trnLoss;
+                if (monitoredLoss < bestLoss - params.getMinImprovement()) {
+                    bestLoss = monitoredLoss;
+                    report.setBestEpoch(epoch);
+                    epochsWithoutImprovement = 0;
+                    if (params.getPatience() > 0) {
+                        bestModel = snapshot(bestModel);
+                    }
+                } else if (params.getPatience() > 0 && ++epochsWithoutImprovement >= params.getPatience()) {
+                    report.setStopReason(TrainingReport.StopReason.EARLY_STOPPED);
+                    break;
+                }
+
+                // OpenCV stops before the iteration limit only once the error change drops below epsilon.
+                if (iterations < maxEpochIterations) {
+                    report.setStopReason(TrainingReport.StopReason.CONVERGED);
+                    break;
+                }
+            }
+
+            int lastEpoch = report.getEpochs().size() - 1;
+            if (bestModel != null && report.getBestEpoch() != lastEpoch) {
+                LOG.debug("Restoring model of epoch {}", report.getBestEpoch());
+                mlp.load(bestModel.getAbsolutePath());
+            }
+        } finally {
+            if (bestModel != null && !bestModel.delete()) {
+                LOG.warn("Could not delete temporary model file: {}", bestModel);
+            }
+        }
+
+        LOG.debug("Training {}", report);
+        return report;
+    }
+
+    /**
+     * Trains on all samples of a given {@code store} at once.
+     * <p>
+     * Features are copied from the mapped file to the training Matrix in blocks of {@link #STORE_BLOCK_ROWS} rows,
+     * no per-sample objects or full-size heap arrays are created. All samples have weight 1.
+     * </p>
+     * @return Number of performed iterations during training
+     */
+    public int train(FeatureStore store) {
+        checkStore(store);
+
+        Mat inputRowVectors = new Mat(store.getCount(), store.getNumFeatures(), NATIVE_DATA_TYPE);
+        Mat outputRowVectors = new Mat(store.getCount(), 1, NATIVE_DATA_TYPE);
+        copyRows(store, 0, store.getCount(), inputRowVectors, outputRowVectors);
+        Mat sampleWeightVectors = Mat.ones(store.getCount(), 1, NATIVE_DATA_TYPE);
 
         return mlp.train(inputRowVectors, outputRowVectors, sampleWeightVectors);
     }
 
+    /**
+     * Trains on a given {@code store} in chunks of {@code chunkSize} samples with {@link #DEFAULT_STORE_PASSES}
+     * passes of {@link #DEFAULT_STORE_ITERATIONS_PER_CHUNK} iterations per chunk.
+     *
+     * @see #train(FeatureStore, int, int, int)
+     */
+    public int train(FeatureStore store, int chunkSize) {
+        return train(store, chunkSize, DEFAULT_STORE_PASSES, DEFAULT_STORE_ITERATIONS_PER_CHUNK);
+    }
+
+    /**
+     * Trains on a given {@code store} in {@code numPasses} passes over consecutive chunks of {@code chunkSize} samples.
+     * <p>
+     * The input/output scaling is computed over the whole store first, so it is the same as with
+     * {@link #train(FeatureStore)}. Each chunk then updates the weights (see {@link CvANN_MLP#UPDATE_WEIGHTS}) for
+     * at most {@code iterationsPerChunk} iterations, so that no chunk gets to fit the model on its own. Only one
+     * chunk is held in memory at a time.
+     * </p>
+     * @return Number of performed iterations during training summed over all passes and chunks
+     */
+    public int train(FeatureStore store, int chunkSize, int numPasses, int iterationsPerChunk) {
+        checkStore(store);
+        if (chunkSize <= 0 || numPasses <= 0 || iterationsPerChunk <= 0) {
+            throw new IllegalArgumentException(String.format("Chunk size (%d), number of passes (%d) and iterations per chunk (%d) must be positive",
+                chunkSize, numPasses, iterationsPerChunk));
+        }
+        initScaling(store);
+
+        CvANN_MLP_TrainParams params = new CvANN_MLP_TrainParams();
+        params.set_term_crit(new TermCriteria(TermCriteria.MAX_ITER + TermCriteria.EPS, iterationsPerChunk, params.get_term_crit().epsilon));
+
+        int numRows = Math.min(chunkSize, store.getCount());
+        Mat inputRowVectors = new Mat(numRows, store.getNumFeatures(), NATIVE_DATA_TYPE);
+        Mat outputRowVectors = new Mat(numRows, 1, NATIVE_DATA_TYPE);
+        Mat sampleWeightVectors = Mat.ones(numRows, 1, NATIVE_DATA_TYPE);
+        int iterationsCounter = 0;
+
+        for (int pass = 0; pass < numPasses; pass++) {
+            for (int fromRow = 0; fromRow < store.getCount(); fromRow += chunkSize) {
+                numRows = Math.min(chunkSize, store.getCount() - fromRow);
+                Mat chunkInputs = inputRowVectors.rowRange(0, numRows);
+                Mat chunkOutputs = outputRowVectors.rowRange(0, numRows);
+                copyRows(store, fromRow, numRows, chunkInputs, chunkOutputs);
+
+                LOG.debug("Pass {}: training on samples {}-{} of {}", pass, fromRow, fromRow + numRows, store.getCount());
+                iterationsCounter += mlp.train(chunkInputs, chunkOutputs, sampleWeightVectors.rowRange(0, numRows),
+                    new Mat(), params, CvANN_MLP.UPDATE_WEIGHTS);
+            }
+        }
+
+        return iterationsCounter;
+    }
+
+    private void checkStore(FeatureStore store) {
+        if (store.getNumFeatures() != numNeuronsInLayers[0]) {
+            throw new IllegalArgumentException(String.format("Store has %d features, the input layer has %d neurons", store.getNumFeatures(), numNeuronsInLayers[0]));
+        }
+        if (store.getCount() == 0) {
+            throw new IllegalArgumentException("Store has no samples");
+        }
+    }
+
+    /**
+     * Initializes the weights and the input/output scaling to the statistics of the whole {@code store}.
+     * <p>
+     * OpenCV derives the input scaling from the mean and standard deviation of each feature and the output scaling
+     * from the label range. Both are reproduced exactly by two rows (mean -/+ standard deviation, min/max label),
+     * which are trained on with zero weight, so only the scaling and the random initial weights are set.
+     * </p>
+     */
+    private void initScaling(FeatureStore store) {
+        int numFeatures = store.getNumFeatures();
+        double[] sums = new double[numFeatures];
+        double[] squareSums = new double[numFeatures];
+        float labelMin = Float.POSITIVE_INFINITY;
+        float labelMax = Float.NEGATIVE_INFINITY;
+
+        int blockRows = Math.min(STORE_BLOCK_ROWS, store.getCount());
+        float[] featureBuffer = new float[blockRows * numFeatures];
+        float[] labelBuffer = new float[blockRows];
+        for (int fromRow = 0; fromRow < store.getCount(); fromRow += blockRows) {
+            int numRows = Math.min(blockRows, store.getCount() - fromRow);
+            store.readFeatures(fromRow, numRows, featureBuffer);
+            store.readLabels(fromRow, numRows, labelBuffer);
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numFeatures; j++) {
+                    double value = featureBuffer[i * numFeatures + j];
+                    sums[j] += value;
+                    squareSums[j] += value * value;
+                }
+                labelMin = Math.min(labelMin, labelBuffer[i]);
+                labelMax = Math.max(labelMax, labelBuffer[i]);
+            }
+        }
+
+        Mat inputRowVectors = new Mat(2, numFeatures, NATIVE_DATA_TYPE);
+        for (int j = 0; j < numFeatures; j++) {
+            double mean = sums[j] / store.getCount();
+            double sigma = Math.sqrt(Math.max(squareSums[j] / store.getCount() - mean * mean, 0));
+            inputRowVectors.put(0, j, mean - sigma);
+            inputRowVectors.put(1, j, mean + sigma);
+        }
+        Mat outputRowVectors = new Mat(2, 1, NATIVE_DATA_TYPE);
+        outputRowVectors.put(0, 0, labelMin);
+        outputRowVectors.put(1, 0, labelMax);
+
+        CvANN_MLP_TrainParams params = new CvANN_MLP_TrainParams();
+        params.set_term_crit(new TermCriteria(TermCriteria.MAX_ITER, 1, 0));
+        mlp.train(inputRowVectors, outputRowVectors, Mat.zeros(2, 1, NATIVE_DATA_TYPE), new Mat(), params, 0);
+    }
+
+    /**
+     * Copies {@code numRows} samples of a given {@code store} starting at {@code fromRow} to the first rows of
+     * {@code inputRowVectors} and {@code outputRowVectors} through a buffer of at most {@link #STORE_BLOCK_ROWS} rows.
+     */
+    private void copyRows(FeatureStore store, int fromRow, int numRows, Mat inputRowVectors, Mat outputRowVectors) {
+        int numFeatures = store.getNumFeatures();
+        int blockRows = Math.min(STORE_BLOCK_ROWS, numRows);
+        float[] featureBuffer = new float[blockRows * numFeatures];
+        float[] labelBuffer = new float[blockRows];
+
+        for (int row = 0; row < numRows; row += blockRows) {
+            int numBlockRows = Math.min(blockRows, numRows - row);
+            store.readFeatures(fromRow + row, numBlockRows, featureBuffer);
+            store.readLabels(fromRow + row, numBlockRows, labelBuffer);
+            // Mat.put() takes the whole array, only the last block may need to be trimmed.
+            boolean fullBlock = numBlockRows == blockRows;
+            inputRowVectors.put(row, 0, fullBlock ? featureBuffer : Arrays.copyOf(featureBuffer, numBlockRows * numFeatures));
+            outputRowVectors.put(row, 0, fullBlock ? labelBuffer : Arrays.copyOf(labelBuffer, numBlockRows));
+        }
+    }
+
     @Override
     public Label predict(Features features) {
         CvLabel label = new CvLabel(Mat.zeros(1, numNeuronsInOutput, NATIVE_DATA_TYPE));
@@ -87,6 +331,81 @@ public class CvANN implements ANN {
         return label;
     }
 
+    /**
+     * Stacks features and labels of given {@code samples} to {@code inputRowVectors} and {@code outputRowVectors}
+     * and returns a column vector of their weights.
+     */
+    protected Mat toRowVectors(List<Sample> samples, Mat inputRowVectors, Mat outputRowVectors) {
+        Mat sampleWeightVectors = Mat.ones(samples.size(), 1, NATIVE_DATA_TYPE);
+
+        for (int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
+
+            inputRowVectors.push_back((Mat) sample.getFeatures().getValue());
+            outputRowVectors.push_back((Mat) sample.getLabel().getValue());
+
+            // Adjust weight of this sample.
+            double sampleWeight = adjustTrainingSampleWeight(sample);
+            sampleWeightVectors.put(i, 0, sampleWeight);
+        }
+
+        return sampleWeightVectors;
+    }
+
+    /**
+     * Computes mean squared error of raw MLP outputs on given {@code inputs} against expected {@code outputs}.
+     */
+    protected double computeLoss(Mat inputs, Mat outputs) {
+        Mat predictions = predictRaw(inputs);
+        double norm = Core.norm(predictions, outputs, Core.NORM_L2);
+        return norm * norm / outputs.total();
+    }
+
+    /**
+     * Computes the share of given {@code inputs} whose predicted class differs from expected {@code outputs}.
+     */
+    protected double computeErrorRate(Mat inputs, Mat outputs) {
+        Mat predictions = predictRaw(inputs);
+        float[] predicted = new float[(int) predictions.total()];
+        float[] expected = new float[(int) outputs.total()];
+        predictions.get(0, 0, predicted);
+        outputs.get(0, 0, expected);
+
+        int errCount = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if ((predicted[i] > 0) != (expected[i] > 0)) {
+                errCount++;
+            }
+        }
+        return (double) errCount / expected.length;
+    }
+
+    private File snapshot(File modelFile) {
+        try {
+            File snapshotFile = modelFile != null ? modelFile : File.createTempFile("cv-ann-", ".xml");
+            save(snapshotFile.getAbsolutePath());
+            return snapshotFile;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Saves the trained model to a given {@code filePath} in OpenCV XML or YAML format (chosen by extension).
+     */
+    public void save(String filePath) {
+        mlp.save(filePath);
+    }
+
+    /**
+     * Computes raw MLP outputs for all rows of {@code inputRowVectors} in a single call.
+     */
+    public Mat predictRaw(Mat inputRowVectors) {
+        Mat outputRowVectors = new Mat();
+        mlp.predict(inputRowVectors, outputRowVectors);
+        return outputRowVectors;
+    }
+
     protected int adaptOpenCvClassToLabel(Mat openCvClass) {
         double adaptedClass = openCvClass.get(0, 0)[0];
         if (adaptedClass > 0) {
@@ -98,7 +417,7 @@ public class CvANN implements ANN {
 
     protected double adjustTrainingSampleWeight(Sample sample) {
 //        return sample.getLabel().get(0, 0)[0] == 1 ? 0.9 : 0.1;
-        return 1;
+        return sample.getWeight();
     }
 
     protected String toString(Mat mat) {
@@ -0,0 +1,102 @@
+package net.stuchl4n3k.lunchtime.classifier.impl.opencv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import lombok.extern.slf4j.Slf4j;
+import net.stuchl4n3k.lunchtime.classifier.impl.quantized.QuantizedANN;
+import net.stuchl4n3k.lunchtime.classifier.util.CvUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Exports a trained {@link CvANN} to a {@link QuantizedANN}.
+ * <p>
+ * OpenCV 2.4 Java bindings do not expose MLP weights, so the model is serialized to XML and the weights
+ * are read back from there.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@Slf4j
+public final class CvANNQuantizer {
+
+    public static final String SUPPORTED_ACTIVATION_FUNCTION = "SIGMOID_SYM";
+
+    private CvANNQuantizer() {
+        // No instantiation.
+    }
+
+    public static QuantizedANN quantize(CvANN ann) {
+        File modelFile = null;
+        try {
+            modelFile = File.createTempFile("cv-ann-", ".xml");
+            ann.save(modelFile.getAbsolutePath());
+            return quantize(modelFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (modelFile != null && !modelFile.delete()) {
+                LOG.warn("Could not delete temporary model file: {}", modelFile);
+            }
+        }
+    }
+
+    /**
+     * Quantizes an MLP previously saved by OpenCV to a given XML {@code modelFile}.
+     */
+    public static QuantizedANN quantize(File modelFile) {
+        Document document;
+        try (InputStream inputStream = Files.newInputStream(modelFile.toPath())) {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inputStream);
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        String activationFunction = getText(document, "activation_function");
+        if (!SUPPORTED_ACTIVATION_FUNCTION.equals(activationFunction)) {
+            throw new IllegalArgumentException("Unsupported activation function: " + activationFunction);
+        }
+
+        Element layerSizesElement = (Element) document.getElementsByTagName("layer_sizes").item(0);
+        int[] layerSizes = Arrays.stream(toDoubles(getText(layerSizesElement, "data"))).mapToInt(d -> (int) d).toArray();
+
+        NodeList layerNodes = document.getElementsByTagName("weights").item(0).getChildNodes();
+        double[][] layerWeights = new double[layerSizes.length - 1][];
+        int k = 0;
+        for (int i = 0; i < layerNodes.getLength(); i++) {
+            Node layerNode = layerNodes.item(i);
+            if (layerNode.getNodeType() == Node.ELEMENT_NODE) {
+                layerWeights[k++] = toDoubles(layerNode.getTextContent());
+            }
+        }
+
+        return QuantizedANN.quantize(
+            layerSizes,
+            toDoubles(getText(document, "input_scale")),
+            layerWeights,
+            toDoubles(getText(document, "output_scale")),
+            Double.parseDouble(getText(document, "f_param1")),
+            Double.parseDouble(getText(document, "f_param2")),
+            CvUtils.INTENSITY_NORMALIZATION_FACTOR);
+    }
+
+    private static String getText(Document document, String tagName) {
+        return document.getElementsByTagName(tagName).item(0).getTextContent();
+    }
+
+    private static String getText(Element element, String tagName) {
+        return element.getElementsByTagName(tagName).item(0).getTextContent();
+    }
+
+    private static double[] toDoubles(String text) {
+        return Arrays.stream(text.trim().split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+    }
+}
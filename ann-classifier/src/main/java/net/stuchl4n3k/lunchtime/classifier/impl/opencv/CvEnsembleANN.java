@@ -0,0 +1,163 @@
+package net.stuchl4n3k.lunchtime.classifier.impl.opencv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import net.stuchl4n3k.lunchtime.classifier.ANN;
+import net.stuchl4n3k.lunchtime.classifier.Features;
+import net.stuchl4n3k.lunchtime.classifier.Label;
+import net.stuchl4n3k.lunchtime.classifier.Sample;
+import org.opencv.core.Mat;
+
+/**
+ * Ensemble of independently trained {@link CvANN} binary classifiers (single output neuron).
+ * <p>
+ * Each member is trained on its own bootstrap sample of the training set (bagging), all members are trained
+ * concurrently. Member outputs are combined either by majority voting or by averaging. A prediction calls each
+ * member once for all rows of the given features, members are evaluated in parallel for large batches only since
+ * a single-sample MLP pass is cheaper than a thread hand-off.
+ * </p>
+ * <p>
+ * Note: OpenCV seeds weight initialization from a per-thread RNG with a fixed state, so bagging is what makes
+ * the members differ.<br>
+ * Note: this class is not thread-safe.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@Slf4j
+public class CvEnsembleANN implements ANN {
+
+    public enum Combination {
+        /** Each member votes with the sign of its output, ties go to -1. */
+        VOTING,
+        /** Sign of the mean member output. */
+        AVERAGING
+    }
+
+    public static final int PARALLEL_PREDICTION_MIN_ROWS = 256;
+
+    protected final int numMembers;
+    protected final int[] numNeuronsInLayers;
+    protected final Combination combination;
+    protected final List<Sample> trainingSamples;
+    protected final Random random;
+    protected List<CvANN> members;
+
+    public CvEnsembleANN(int numMembers, int numNeuronsInput, int numNumNeuronsHidden, int numNeuronsOutput, Combination combination) {
+        this(numMembers, new int[]{numNeuronsInput, numNumNeuronsHidden, numNeuronsOutput}, combination);
+    }
+
+    public CvEnsembleANN(int numMembers, int[] numNeuronsInLayers, Combination combination) {
+        if (numNeuronsInLayers[numNeuronsInLayers.length - 1] != 1) {
+            throw new IllegalArgumentException("Only a single output neuron is supported");
+        }
+        this.numMembers = numMembers;
+        this.numNeuronsInLayers = numNeuronsInLayers;
+        this.combination = combination;
+        this.trainingSamples = new ArrayList<>();
+        this.random = new Random();
+        this.members = new ArrayList<>();
+    }
+
+    @Override
+    public void addTrainingSample(Sample sample) {
+        trainingSamples.add(sample);
+    }
+
+    /**
+     * Trains all members concurrently, each on a bootstrap sample of the training set.
+     * @return Number of performed iterations summed over all members
+     */
+    @Override
+    public int train() {
+        List<List<Sample>> bootstrapSamples = new ArrayList<>();
+        for (int i = 0; i < numMembers; i++) {
+            List<Sample> bootstrap = new ArrayList<>(trainingSamples.size());
+            for (int j = 0; j < trainingSamples.size(); j++) {
+                bootstrap.add(trainingSamples.get(random.nextInt(trainingSamples.size())));
+            }
+            bootstrapSamples.add(bootstrap);
+        }
+        trainingSamples.clear();
+
+        int numThreads = Math.min(numMembers, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<CvANN>> futures = new ArrayList<>();
+            int[] iterations = new int[numMembers];
+            for (int i = 0; i < numMembers; i++) {
+                int memberIndex = i;
+                futures.add(executor.submit(() -> {
+                    // Created in the worker so that OpenCV uses the worker's RNG.
+                    CvANN member = new CvANN(numNeuronsInLayers);
+                    bootstrapSamples.get(memberIndex).forEach(member::addTrainingSample);
+                    iterations[memberIndex] = member.train();
+                    return member;
+                }));
+            }
+
+            List<CvANN> trainedMembers = new ArrayList<>();
+            for (Future<CvANN> future : futures) {
+                trainedMembers.add(future.get());
+            }
+            members = trainedMembers;
+
+            LOG.debug("Trained {} members on {} threads, iterations: {}", numMembers, numThreads, Arrays.toString(iterations));
+            return Arrays.stream(iterations).sum();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Predicts a label for each row of a given {@code features} matrix.
+     */
+    @Override
+    public Label predict(Features features) {
+        if (members.isEmpty()) {
+            throw new IllegalStateException("The ensemble has not been trained");
+        }
+
+        Mat inputRowVectors = (Mat) features.getValue();
+        int numRows = inputRowVectors.rows();
+
+        List<float[]> memberOutputs = (numRows >= PARALLEL_PREDICTION_MIN_ROWS ? members.parallelStream() : members.stream())
+            .map(member -> {
+                Mat outputs = member.predictRaw(inputRowVectors);
+                float[] values = new float[numRows];
+                outputs.get(0, 0, values);
+                return values;
+            })
+            .collect(Collectors.toList());
+
+        Mat labels = Mat.zeros(numRows, 1, CvANN.NATIVE_DATA_TYPE);
+        float[] combined = new float[numRows];
+        for (int row = 0; row < numRows; row++) {
+            double sum = 0;
+            for (float[] outputs : memberOutputs) {
+                if (combination == Combination.VOTING) {
+                    sum += outputs[row] > 0 ? 1 : -1;
+                } else {
+                    sum += outputs[row];
+                }
+            }
+            combined[row] = sum > 0 ? 1 : -1;
+        }
+        labels.put(0, 0, combined);
+        return new CvLabel(labels);
+    }
+
+    public int getNumMembers() {
+        return numMembers;
+    }
+}
@@ -0,0 +1,231 @@
+package net.stuchl4n3k.lunchtime.classifier.impl.opencv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import net.stuchl4n3k.lunchtime.classifier.Sample;
+import org.opencv.core.Mat;
+
+/**
+ * Collapses near-identical labeled samples into weighted representatives.
+ * <p>
+ * A sample joins the first cluster of the same label whose representative is closer than {@code maxDistance},
+ * otherwise it becomes the representative of a new cluster. The distance is the root mean square difference of
+ * features (normalized intensities in [0-1]). The representative's weight is the summed weight of all clustered
+ * samples. {@link CvANN} picks the weight up through {@link CvANN#adjustTrainingSampleWeight(Sample)}, so the training
+ * set keeps the original distribution while consecutive frames of an unchanged scene cost a single sample.
+ * </p>
+ * <p>
+ * Candidate clusters are looked up in a grid of their representatives: the features are split into
+ * {@code numBlocks} consecutive blocks (bands of image rows), and the mean of each block of {@code k} out of
+ * {@code n} features, scaled by {@code sqrt(k/n)}, is one coordinate. The grid distance of two samples never exceeds
+ * their RMS distance, so with cells {@code maxDistance} wide a near-duplicate can only be in the sample's cell or in
+ * neighbour cells whose crossed edges are closer than {@code maxDistance} altogether. Only those are searched and
+ * no near-duplicate is missed.
+ * </p>
+ * <p>
+ * Samples are processed as they come and only representatives are retained, so memory is proportional to
+ * the number of clusters.<br>
+ * Note: this class is not thread-safe.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+public class CvSampleDeduplicator {
+
+    public static final double DEFAULT_MAX_DISTANCE = 0.02;
+    public static final int DEFAULT_NUM_BLOCKS = 4;
+
+    private final double maxDistance;
+    private final int numBlocks;
+    private final List<Cluster> clusters = new ArrayList<>();
+    private final Map<CellKey, List<Cluster>> cells = new HashMap<>();
+    private int numSamples;
+
+    public CvSampleDeduplicator() {
+        this(DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param maxDistance RMS distance of features under which samples are merged, larger distance merges more samples
+     */
+    public CvSampleDeduplicator(double maxDistance) {
+        this(maxDistance, DEFAULT_NUM_BLOCKS);
+    }
+
+    /**
+     * @param maxDistance RMS distance of features under which samples are merged, larger distance merges more samples
+     * @param numBlocks number of feature blocks of the lookup grid, more blocks make smaller cells but more lookups
+     */
+    public CvSampleDeduplicator(double maxDistance, int numBlocks) {
+        if (!(maxDistance > 0)) {
+            throw new IllegalArgumentException("Max distance must be positive: " + maxDistance);
+        }
+        if (numBlocks < 1) {
+            throw new IllegalArgumentException("Number of blocks must be positive: " + numBlocks);
+        }
+        this.maxDistance = maxDistance;
+        this.numBlocks = numBlocks;
+    }
+
+    public void add(Sample sample) {
+        numSamples++;
+        Mat features = (Mat) sample.getFeatures().getValue();
+        float[] values = new float[(int) features.total()];
+        features.get(0, 0, values);
+        int label = (int) Math.signum(((Mat) sample.getLabel().getValue()).get(0, 0)[0]);
+        double[] position = position(values);
+        long[] cell = cell(position);
+
+        Cluster cluster = findCluster(values, label, position, cell);
+        if (cluster == null) {
+            cluster = new Cluster(sample, values);
+            clusters.add(cluster);
+            cells.computeIfAbsent(new CellKey(cell, label), key -> new ArrayList<>()).add(cluster);
+        } else {
+            cluster.weight += sample.getWeight();
+        }
+    }
+
+    /**
+     * Returns cluster representatives weighted by the summed weight of their clusters, in order of appearance.
+     */
+    public List<Sample> getSamples() {
+        return clusters.stream()
+            .map(cluster -> new Sample(cluster.representative.getFeatures(), cluster.representative.getLabel(), cluster.weight))
+            .collect(Collectors.toList());
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public int getNumClusters() {
+        return clusters.size();
+    }
+
+    private Cluster findCluster(float[] values, int label, double[] position, long[] cell) {
+        return findCluster(values, label, position, cell, new long[cell.length], 0, 0);
+    }
+
+    /**
+     * Searches cells around {@code cell} block by block. A near-duplicate lies closer than {@code maxDistance} to
+     * {@code position}, so it can only be in a neighbour cell whose crossed edges are closer than that altogether.
+     */
+    private Cluster findCluster(float[] values, int label, double[] position, long[] cell, long[] neighbour,
+                                int block, double squaredEdgeDistance) {
+        if (block == cell.length) {
+            return findCluster(values, cells.get(new CellKey(neighbour, label)));
+        }
+
+        double offset = position[block] - cell[block] * maxDistance;
+        double[] squaredEdgeDistances = {0, offset * offset, (maxDistance - offset) * (maxDistance - offset)};
+        long[] shifts = {0, -1, 1};
+        for (int i = 0; i < shifts.length; i++) {
+            double squaredDistance = squaredEdgeDistance + squaredEdgeDistances[i];
+            if (squaredDistance >= maxDistance * maxDistance) {
+                continue;
+            }
+            neighbour[block] = cell[block] + shifts[i];
+            Cluster cluster = findCluster(values, label, position, cell, neighbour, block + 1, squaredDistance);
+            if (cluster != null) {
+                return cluster;
+            }
+        }
+        return null;
+    }
+
+    private Cluster findCluster(float[] values, List<Cluster> candidates) {
+        if (candidates == null) {
+            return null;
+        }
+        double maxSquaredDistanceSum = maxDistance * maxDistance * values.length;
+        for (Cluster candidate : candidates) {
+            if (squaredDistanceSum(values, candidate.values, maxSquaredDistanceSum) < maxSquaredDistanceSum) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Computes the position of {@code values} in the lookup grid: the mean of each of {@code numBlocks} consecutive
+     * blocks of {@code k} out of {@code n} features, scaled by {@code sqrt(k/n)}.
+     */
+    private double[] position(float[] values) {
+        int blocks = Math.min(numBlocks, values.length);
+        double[] position = new double[blocks];
+        for (int b = 0; b < blocks; b++) {
+            int from = b * values.length / blocks;
+            int to = (b + 1) * values.length / blocks;
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            int size = to - from;
+            position[b] = sum / size * Math.sqrt((double) size / values.length);
+        }
+        return position;
+    }
+
+    private long[] cell(double[] position) {
+        long[] cell = new long[position.length];
+        for (int b = 0; b < position.length; b++) {
+            cell[b] = (long) Math.floor(position[b] / maxDistance);
+        }
+        return cell;
+    }
+
+    /**
+     * Sums squared differences of {@code a} and {@code b}, stops early once the sum reaches {@code limit}.
+     */
+    private static double squaredDistanceSum(float[] a, float[] b, double limit) {
+        double sum = 0;
+        for (int i = 0; i < a.length && sum < limit; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static class CellKey {
+
+        private final long[] cell;
+        private final int label;
+
+        private CellKey(long[] cell, int label) {
+            this.cell = cell;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CellKey)) {
+                return false;
+            }
+            CellKey other = (CellKey) o;
+            return label == other.label && Arrays.equals(cell, other.cell);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(cell) + label;
+        }
+    }
+
+    private static class Cluster {
+
+        private final Sample representative;
+        private final float[] values;
+        private double weight;
+
+        private Cluster(Sample representative, float[] values) {
+            this.representative = representative;
+            this.values = values;
+            this.weight = representative.getWeight();
+        }
+    }
+}
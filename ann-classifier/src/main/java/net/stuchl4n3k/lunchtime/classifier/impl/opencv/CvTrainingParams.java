@@ -0,0 +1,126 @@
+package net.stuchl4n3k.lunchtime.classifier.impl.opencv;
+
+import lombok.ToString;
+import org.opencv.core.TermCriteria;
+import org.opencv.ml.CvANN_MLP_TrainParams;
+
+/**
+ * Parametrization of {@link CvANN#train(CvTrainingParams)}.
+ * <p>
+ * Training runs in epochs of {@code iterationsPerEpoch} OpenCV iterations until it converges (see {@code epsilon}),
+ * reaches {@code maxIterations} or the monitored loss does not improve by more than {@code minImprovement} for
+ * {@code patience} epochs. The monitored loss is the validation loss if {@code validationFraction} is positive,
+ * training loss otherwise.
+ * </p>
+ * <p>
+ * Defaults of the method, iterations and epsilon are those of {@link CvANN_MLP_TrainParams}.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@ToString
+public class CvTrainingParams {
+
+    private int method = CvANN_MLP_TrainParams.RPROP;
+    private int maxIterations = 1000;
+    private double epsilon = 0.01;
+    private int iterationsPerEpoch = 10;
+    private int patience = 5;
+    private double minImprovement = 1e-4;
+    private double validationFraction = 0.15;
+    private long seed = 0;
+
+    /**
+     * One of {@link CvANN_MLP_TrainParams#RPROP} and {@link CvANN_MLP_TrainParams#BACKPROP}.
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    public CvTrainingParams setMethod(int method) {
+        this.method = method;
+        return this;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public CvTrainingParams setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public CvTrainingParams setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+        return this;
+    }
+
+    public int getIterationsPerEpoch() {
+        return iterationsPerEpoch;
+    }
+
+    public CvTrainingParams setIterationsPerEpoch(int iterationsPerEpoch) {
+        this.iterationsPerEpoch = iterationsPerEpoch;
+        return this;
+    }
+
+    /**
+     * Number of epochs without improvement after which training stops, {@code 0} disables early stopping.
+     */
+    public int getPatience() {
+        return patience;
+    }
+
+    public CvTrainingParams setPatience(int patience) {
+        this.patience = patience;
+        return this;
+    }
+
+    public double getMinImprovement() {
+        return minImprovement;
+    }
+
+    public CvTrainingParams setMinImprovement(double minImprovement) {
+        this.minImprovement = minImprovement;
+        return this;
+    }
+
+    /**
+     * Fraction of training samples held out for validation, picked at random (see {@link #getSeed()}).
+     */
+    public double getValidationFraction() {
+        return validationFraction;
+    }
+
+    public CvTrainingParams setValidationFraction(double validationFraction) {
+        this.validationFraction = validationFraction;
+        return this;
+    }
+
+    /**
+     * Seed of the shuffle that picks validation samples, the same seed and samples give the same split.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public CvTrainingParams setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Creates OpenCV parameters for a single epoch limited to {@code iterations}.
+     */
+    protected CvANN_MLP_TrainParams toTrainParams(int iterations) {
+        CvANN_MLP_TrainParams params = new CvANN_MLP_TrainParams();
+        params.set_train_method(method);
+        params.set_term_crit(new TermCriteria(TermCriteria.MAX_ITER + TermCriteria.EPS, iterations, epsilon));
+        return params;
+    }
+}
@@ -0,0 +1,180 @@
+package net.stuchl4n3k.lunchtime.classifier.impl.quantized;
+
+/**
+ * Fixed-point forward pass of a trained MLP with symmetric sigmoid activations.
+ * <p>
+ * Weights are stored as int8 with one scale per neuron, hidden activations as int16 and dot products are
+ * accumulated in int32. Only the per-neuron rescale and the activation itself are computed in floating point.
+ * The input scaling of the network (including the pixel intensity normalization) is folded into the first layer,
+ * so the network consumes raw 8-bit grayscale pixels directly.
+ * </p>
+ * <p>
+ * Note: this class is immutable and thus thread-safe.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+public class QuantizedANN {
+
+    public static final int WEIGHT_MAX = Byte.MAX_VALUE;
+    public static final int ACTIVATION_MAX = Short.MAX_VALUE;
+    public static final int PIXEL_MAX = 255;
+
+    private final int[] layerSizes;
+    private final byte[][] weights;
+    private final float[][] weightScales;
+    private final float[][] biases;
+    private final double alpha;
+    private final double beta;
+    private final float activationStep;
+    private final double[] outputScale;
+
+    protected QuantizedANN(int[] layerSizes, byte[][] weights, float[][] weightScales, float[][] biases,
+                           double alpha, double beta, double[] outputScale) {
+        this.layerSizes = layerSizes;
+        this.weights = weights;
+        this.weightScales = weightScales;
+        this.biases = biases;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.activationStep = (float) (beta / ACTIVATION_MAX);
+        this.outputScale = outputScale;
+    }
+
+    /**
+     * Quantizes a floating point MLP.
+     *
+     * @param layerSizes   number of neurons in each layer including input and output
+     * @param inputScale   {@code (scale, shift)} pair for each input neuron
+     * @param layerWeights weights of each layer as a row-major {@code (numIn + 1) x numOut} matrix, the last row
+     *                     being the biases
+     * @param outputScale  {@code (scale, shift)} pair for each output neuron
+     * @param alpha        steepness of the activation {@code f(x) = beta * (1 - e^(-alpha*x)) / (1 + e^(-alpha*x))}
+     * @param beta         amplitude of the activation
+     * @param pixelScale   normalization factor that turns an 8-bit pixel intensity into an input feature
+     */
+    public static QuantizedANN quantize(int[] layerSizes, double[] inputScale, double[][] layerWeights,
+                                        double[] outputScale, double alpha, double beta, double pixelScale) {
+        int numLayers = layerSizes.length - 1;
+        if (layerWeights.length != numLayers) {
+            throw new IllegalArgumentException(String.format("Expected %d weight layers, got %d", numLayers, layerWeights.length));
+        }
+
+        byte[][] weights = new byte[numLayers][];
+        float[][] weightScales = new float[numLayers][];
+        float[][] biases = new float[numLayers][];
+
+        for (int k = 0; k < numLayers; k++) {
+            int numIn = layerSizes[k];
+            int numOut = layerSizes[k + 1];
+            int maxInput = k == 0 ? PIXEL_MAX : ACTIVATION_MAX;
+            if ((long) numIn * WEIGHT_MAX * maxInput > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("Layer %d is too wide for int32 accumulation: %d", k, numIn));
+            }
+
+            weights[k] = new byte[numIn * numOut];
+            weightScales[k] = new float[numOut];
+            biases[k] = new float[numOut];
+
+            for (int j = 0; j < numOut; j++) {
+                double[] neuronWeights = new double[numIn];
+                double bias = layerWeights[k][numIn * numOut + j];
+                for (int i = 0; i < numIn; i++) {
+                    double w = layerWeights[k][i * numOut + j];
+                    if (k == 0) {
+                        // Fold the input scaling into the first layer: w * (a * p * pixelScale + b).
+                        neuronWeights[i] = w * inputScale[2 * i] * pixelScale;
+                        bias += w * inputScale[2 * i + 1];
+                    } else {
+                        neuronWeights[i] = w;
+                    }
+                }
+
+                double maxAbs = 0;
+                for (double w : neuronWeights) {
+                    maxAbs = Math.max(maxAbs, Math.abs(w));
+                }
+                double scale = maxAbs > 0 ? maxAbs / WEIGHT_MAX : 1;
+
+                // Neuron weights are stored contiguously to keep the inner loop sequential.
+                for (int i = 0; i < numIn; i++) {
+                    weights[k][j * numIn + i] = (byte) clamp(Math.round(neuronWeights[i] / scale), WEIGHT_MAX);
+                }
+                weightScales[k][j] = (float) scale;
+                biases[k][j] = (float) bias;
+            }
+        }
+
+        return new QuantizedANN(layerSizes.clone(), weights, weightScales, biases, alpha, beta, outputScale.clone());
+    }
+
+    /**
+     * Computes raw network outputs for a given row vector of 8-bit grayscale {@code pixels}.
+     */
+    public double[] evaluate(byte[] pixels) {
+        int numInputs = layerSizes[0];
+        if (pixels.length != numInputs) {
+            throw new IllegalArgumentException(String.format("Expected %d pixels, got %d", numInputs, pixels.length));
+        }
+
+        int[] layerIn = new int[numInputs];
+        for (int i = 0; i < numInputs; i++) {
+            layerIn[i] = pixels[i] & 0xFF;
+        }
+        // Pixel normalization is folded into the first layer weights.
+        float inputStep = 1;
+
+        int numLayers = weights.length;
+        double[] result = null;
+        for (int k = 0; k < numLayers; k++) {
+            int numIn = layerSizes[k];
+            int numOut = layerSizes[k + 1];
+            byte[] w = weights[k];
+            boolean outputLayer = k == numLayers - 1;
+
+            int[] layerOut = new int[numOut];
+            if (outputLayer) {
+                result = new double[numOut];
+            }
+
+            for (int j = 0, offset = 0; j < numOut; j++, offset += numIn) {
+                int acc = 0;
+                for (int i = 0; i < numIn; i++) {
+                    acc += w[offset + i] * layerIn[i];
+                }
+                double activation = activate(acc * weightScales[k][j] * inputStep + biases[k][j]);
+
+                if (outputLayer) {
+                    result[j] = activation * outputScale[2 * j] + outputScale[2 * j + 1];
+                } else {
+                    layerOut[j] = clamp(Math.round(activation / activationStep), ACTIVATION_MAX);
+                }
+            }
+
+            layerIn = layerOut;
+            inputStep = activationStep;
+        }
+
+        return result;
+    }
+
+    /**
+     * Predicts a class ({@code 1} or {@code -1}) for a given row vector of 8-bit grayscale {@code pixels}.
+     */
+    public int predict(byte[] pixels) {
+        return evaluate(pixels)[0] > 0 ? 1 : -1;
+    }
+
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    protected double activate(double x) {
+        // Same as beta * (1 - e^(-alpha*x)) / (1 + e^(-alpha*x)) but does not overflow for large |x|.
+        return beta * Math.tanh(alpha * x / 2);
+    }
+
+    private static int clamp(long value, int max) {
+        return (int) Math.max(-max, Math.min(max, value));
+    }
+}
@@ -0,0 +1,133 @@
+package net.stuchl4n3k.lunchtime.classifier.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped columnar store of feature vectors and their labels.
+ * <p>
+ * The file layout (little endian) is:
+ * <pre>
+ * int   magic ({@link #MAGIC})
+ * int   version ({@link #VERSION})
+ * int   width
+ * int   height
+ * int   count
+ * float features[count][width * height]
+ * float labels[count]
+ * </pre>
+ * Samples are never materialized as objects, rows are copied straight from the mapped file to the caller's buffer.
+ * </p>
+ * <p>
+ * Note: a single mapping is limited to 2 GB, that is ~7 million samples of 10x7 features.<br>
+ * Note: the mapping is released by the garbage collector, not by {@link #close()}.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+public class FeatureStore implements Closeable {
+
+    public static final int MAGIC = 0x4C434653; // "LCFS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int count;
+    private final FloatBuffer features;
+    private final FloatBuffer labels;
+
+    protected FeatureStore(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int magic = buffer.getInt();
+        int version = buffer.getInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IllegalArgumentException(String.format("Not a feature store of version %d", VERSION));
+        }
+        this.width = buffer.getInt();
+        this.height = buffer.getInt();
+        this.count = buffer.getInt();
+
+        long expectedSize = HEADER_SIZE + (long) count * (getNumFeatures() + 1) * Float.BYTES;
+        if (buffer.capacity() != expectedSize) {
+            throw new IllegalArgumentException(String.format("Corrupted feature store: expected %d bytes, got %d", expectedSize, buffer.capacity()));
+        }
+
+        buffer.position(HEADER_SIZE);
+        this.features = slice(buffer, count * getNumFeatures());
+        this.labels = slice(buffer, count);
+    }
+
+    public static FeatureStore open(File file) {
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            if (channel.size() > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IllegalArgumentException("Feature store is too large to be mapped at once: " + file);
+            }
+            return new FeatureStore(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumFeatures() {
+        return width * height;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Copies feature vectors of {@code numRows} samples starting at {@code fromRow} to {@code dst} row by row.
+     */
+    public void readFeatures(int fromRow, int numRows, float[] dst) {
+        FloatBuffer view = features.duplicate();
+        view.position(fromRow * getNumFeatures());
+        view.get(dst, 0, numRows * getNumFeatures());
+    }
+
+    /**
+     * Copies labels of {@code numRows} samples starting at {@code fromRow} to {@code dst}.
+     */
+    public void readLabels(int fromRow, int numRows, float[] dst) {
+        FloatBuffer view = labels.duplicate();
+        view.position(fromRow);
+        view.get(dst, 0, numRows);
+    }
+
+    public float getLabel(int row) {
+        return labels.get(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static FloatBuffer slice(ByteBuffer buffer, int numFloats) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(numFloats * Float.BYTES);
+        buffer.position(buffer.position() + numFloats * Float.BYTES);
+        return slice.asFloatBuffer();
+    }
+}
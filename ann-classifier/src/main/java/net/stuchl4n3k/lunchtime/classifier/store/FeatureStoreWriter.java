@@ -0,0 +1,96 @@
+package net.stuchl4n3k.lunchtime.classifier.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Sequentially writes a {@link FeatureStore} file.
+ * <p>
+ * Features are streamed to the file as they come, labels are kept in memory (4 bytes per sample) and appended
+ * together with the final sample count on {@link #close()}.
+ * </p>
+ * <p>
+ * Note: this class is not thread-safe.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+public class FeatureStoreWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final ByteBuffer rowBuffer;
+    private float[] labels = new float[1024];
+    private int count;
+
+    public FeatureStoreWriter(File file, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowBuffer = ByteBuffer.allocate(width * height * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            // Reserve space for the header, it is written once the count is known.
+            channel.position(FeatureStore.HEADER_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends a sample given by its {@code features} vector of size {@code width * height} and its {@code label}.
+     */
+    public void append(float[] features, float label) {
+        if (features.length != width * height) {
+            throw new IllegalArgumentException(String.format("Expected %d features, got %d", width * height, features.length));
+        }
+
+        rowBuffer.clear();
+        rowBuffer.asFloatBuffer().put(features);
+        write(rowBuffer);
+
+        if (count == labels.length) {
+            labels = Arrays.copyOf(labels, labels.length * 2);
+        }
+        labels[count++] = label;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            ByteBuffer labelBuffer = ByteBuffer.allocate(count * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            labelBuffer.asFloatBuffer().put(labels, 0, count);
+            write(labelBuffer);
+
+            ByteBuffer header = ByteBuffer.allocate(FeatureStore.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(FeatureStore.MAGIC).putInt(FeatureStore.VERSION).putInt(width).putInt(height).putInt(count);
+            header.flip();
+            channel.position(0);
+            write(header);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void write(ByteBuffer buffer) {
+        buffer.rewind();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
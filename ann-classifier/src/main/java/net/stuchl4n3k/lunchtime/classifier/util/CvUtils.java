@@ -4,6 +4,8 @@ import java.awt.Desktop;
 import java.io.File;
 import java.io.IOException;
 import lombok.extern.slf4j.Slf4j;
+import nu.pattern.OpenCV;
+import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfFloat;
@@ -17,12 +19,34 @@ import org.opencv.imgproc.Imgproc;
 @Slf4j
 public final class CvUtils {
 
-    private static final double INTENSITY_NORMALIZATION_FACTOR = 1.0 / 255.5;
+    public static final double INTENSITY_NORMALIZATION_FACTOR = 1.0 / 255.5;
+
+    private static volatile boolean nativeLibrariesLoaded;
 
     private CvUtils() {
         // No instantiation.
     }
 
+    /**
+     * Extracts and loads OpenCV native libraries unless already done.
+     * <p>
+     * Must be called before any OpenCV class is instantiated.
+     * </p>
+     */
+    public static void loadNativeLibraries() {
+        if (nativeLibrariesLoaded) {
+            return;
+        }
+        synchronized (CvUtils.class) {
+            if (!nativeLibrariesLoaded) {
+                LOG.debug("Loading OpenCV native libraries.");
+                OpenCV.loadShared();
+                System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+                nativeLibrariesLoaded = true;
+            }
+        }
+    }
+
     /**
      * Loads an image on a given {@code filePath} to a Matrix.
      * <p>
@@ -49,6 +73,26 @@ public final class CvUtils {
      * </p>
      */
     public static Mat loadImage(String filePath, int width, int height, boolean increaseContrast) {
+        Mat image = loadGrayscaleImage(filePath, width, height, increaseContrast);
+
+        // Normalize intensities.
+        Mat imageNorm = new MatOfFloat();
+        image.convertTo(imageNorm, CvType.CV_32F, INTENSITY_NORMALIZATION_FACTOR);
+
+        return imageNorm;
+    }
+
+    /**
+     * Loads an image on a given {@code filePath} to a Matrix of raw 8-bit intensities.
+     * <p>
+     * The image is loaded in grayscale and subsampled to SAMPLE_W x SAMPLE_H px.
+     * The resulting Matrix is a {@link CvType#CV_8U} row vector of size 1xN, where
+     * <pre>
+     * N = SAMPLE_W * SAMPLE_H
+     * </pre>
+     * </p>
+     */
+    public static Mat loadGrayscaleImage(String filePath, int width, int height, boolean increaseContrast) {
         LOG.debug("Loading image '{}'.", filePath);
 
         // Load as grayscale image.
@@ -62,15 +106,18 @@ public final class CvUtils {
         // Downsample it.
         Imgproc.resize(image, image, new Size(width, height), 0, 0, Imgproc.INTER_AREA);
 
-        // Normalize intensities.
-        Mat imageNorm = new MatOfFloat();
-        image.convertTo(imageNorm, CvType.CV_32F, INTENSITY_NORMALIZATION_FACTOR);
-
         // Reshape it to a row vector.
-        Mat imageRowVec = imageNorm.reshape(0, 1);
-
+        return image.reshape(0, 1);
+    }
 
-        return imageRowVec;
+    /**
+     * Loads an image the same way as {@link #loadGrayscaleImage(String, int, int, boolean)} and returns its pixels.
+     */
+    public static byte[] loadPixels(String filePath, int width, int height) {
+        Mat image = loadGrayscaleImage(filePath, width, height, false);
+        byte[] pixels = new byte[(int) image.total()];
+        image.get(0, 0, pixels);
+        return pixels;
     }
 
     public static void openAsImage(Mat image) {
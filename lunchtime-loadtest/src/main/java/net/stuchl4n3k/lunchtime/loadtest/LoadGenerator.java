@@ -0,0 +1,98 @@
+package net.stuchl4n3k.lunchtime.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Closed-loop HTTP load generator.
+ * <p>
+ * A fixed number of workers issue GET requests back to back until the requested number of requests is done.
+ * Every request is timed, including failed ones.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    private final URL url;
+
+    public LoadGenerator(URL url) {
+        this.url = url;
+    }
+
+    public LoadResult run(int concurrency, int numRequests) {
+        long[] latencyNanos = new long[numRequests];
+        AtomicInteger nextRequest = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        List<Future<?>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(executor.submit(() -> {
+                int request;
+                while ((request = nextRequest.getAndIncrement()) < numRequests) {
+                    long requestStart = System.nanoTime();
+                    if (!get()) {
+                        errors.incrementAndGet();
+                    }
+                    latencyNanos[request] = System.nanoTime() - requestStart;
+                }
+            }));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        return new LoadResult(concurrency, errors.get(), elapsedNanos, latencyNanos);
+    }
+
+    /**
+     * Performs a single request and reads the whole response so that the connection can be reused.
+     */
+    private boolean get() {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                try (InputStream body = in) {
+                    byte[] buffer = new byte[4096];
+                    while (body.read(buffer) >= 0) {
+                        // Drain.
+                    }
+                }
+            }
+            return status == HttpURLConnection.HTTP_OK;
+        } catch (IOException e) {
+            LOG.debug("Request failed: {}", e.getMessage());
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+}
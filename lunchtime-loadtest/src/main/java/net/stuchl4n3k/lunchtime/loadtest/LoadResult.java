@@ -0,0 +1,64 @@
+package net.stuchl4n3k.lunchtime.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of a single {@link LoadGenerator} run.
+ *
+ * @author petr.stuchlik
+ */
+public class LoadResult {
+
+    private final int concurrency;
+    private final int errors;
+    private final long elapsedNanos;
+    private final long[] sortedLatencyNanos;
+
+    public LoadResult(int concurrency, int errors, long elapsedNanos, long[] latencyNanos) {
+        this.concurrency = concurrency;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencyNanos = latencyNanos.clone();
+        Arrays.sort(sortedLatencyNanos);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getRequests() {
+        return sortedLatencyNanos.length;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns completed requests per second.
+     */
+    public double getThroughput() {
+        return getRequests() / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Returns a latency percentile in milliseconds, e.g. {@code 99.9} for p999.
+     */
+    public double getLatencyMillis(double percentile) {
+        if (sortedLatencyNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sortedLatencyNanos.length) - 1;
+        return sortedLatencyNanos[Math.max(0, Math.min(index, sortedLatencyNanos.length - 1))] / 1e6;
+    }
+
+    public static String header() {
+        return String.format("%11s %8s %6s %10s %9s %9s %9s", "concurrency", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%11d %8d %6d %10.1f %9.2f %9.2f %9.2f", concurrency, getRequests(), errors, getThroughput(),
+            getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(99.9));
+    }
+}
@@ -0,0 +1,115 @@
+package net.stuchl4n3k.lunchtime.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * End-to-end load test of the {@code lunchtime-web} classification endpoint.
+ * <p>
+ * Starts a {@link StubLunchCamServer}, launches the {@code lunchtime-web} executable jar pointed at it, waits
+ * until the model is ready and then reports throughput and latency percentiles of {@code GET /} for each
+ * concurrency level. Run from the project root, parametrized by system properties:
+ * </p>
+ * <pre>
+ * java -Dconcurrency=1,4,16 -Drequests=2000 -Dlatency=20 -Djitter=10 -DfailureRate=0.01 \
+ *      -jar lunchtime-loadtest/target/lunchtime-loadtest-1.0-SNAPSHOT.jar
+ * </pre>
+ *
+ * @author petr.stuchlik
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    public static void main(String[] args) throws Exception {
+        File webAppJar = new File(System.getProperty("webAppJar", "lunchtime-web/target/lunchtime-web-1.0-SNAPSHOT.jar"));
+        int[] concurrencyLevels = Arrays.stream(System.getProperty("concurrency", "1,2,4,8,16,32").split(","))
+            .mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+        int numRequests = Integer.getInteger("requests", 1000);
+        int numWarmupRequests = Integer.getInteger("warmupRequests", 200);
+
+        StubLunchCamServer lunchCam = new StubLunchCamServer(
+            new File(System.getProperty("dataset", "training_dataset")),
+            Long.getLong("latency", 0),
+            Long.getLong("jitter", 0),
+            Double.parseDouble(System.getProperty("failureRate", "0")));
+        lunchCam.start(0);
+
+        int webAppPort = findFreePort();
+        Process webApp = startWebApp(webAppJar, webAppPort, lunchCam.getUrl());
+        try {
+            String baseUrl = String.format("http://localhost:%d", webAppPort);
+            awaitReady(new URL(baseUrl + "/health/ready"), webApp);
+
+            LoadGenerator loadGenerator = new LoadGenerator(new URL(baseUrl + "/"));
+            LOG.info("Warming up with {} requests...", numWarmupRequests);
+            loadGenerator.run(concurrencyLevels[concurrencyLevels.length - 1], numWarmupRequests);
+
+            List<LoadResult> results = new ArrayList<>();
+            for (int concurrency : concurrencyLevels) {
+                LOG.info("Running {} requests with concurrency {}...", numRequests, concurrency);
+                results.add(loadGenerator.run(concurrency, numRequests));
+            }
+
+            System.err.println("#######################################");
+            System.err.println(LoadResult.header());
+            results.forEach(System.err::println);
+        } finally {
+            webApp.destroy();
+            webApp.waitFor();
+            lunchCam.stop();
+        }
+    }
+
+    private static Process startWebApp(File webAppJar, int port, String lunchCamUrl) throws IOException {
+        if (!webAppJar.exists()) {
+            throw new IllegalArgumentException("Web app jar does not exist: " + webAppJar);
+        }
+        File logFile = new File(webAppJar.getParentFile(), "loadtest-web.log");
+        LOG.info("Starting {} on port {}, logging to {}", webAppJar, port, logFile);
+
+        String java = new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+        return new ProcessBuilder(java, "-jar", webAppJar.getAbsolutePath(),
+            "--server.port=" + port,
+            "--lunchtime.cam.url=" + lunchCamUrl,
+            "--logging.level.net.stuchl4n3k=WARN")
+            .redirectErrorStream(true)
+            .redirectOutput(logFile)
+            .start();
+    }
+
+    private static void awaitReady(URL readinessUrl, Process webApp) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!webApp.isAlive()) {
+                throw new IllegalStateException("Web app exited with code " + webApp.exitValue());
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) readinessUrl.openConnection();
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    LOG.info("Web app is ready.");
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet.
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Web app did not become ready in time");
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
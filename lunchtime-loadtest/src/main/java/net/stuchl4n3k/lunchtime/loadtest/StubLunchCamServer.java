@@ -0,0 +1,123 @@
+package net.stuchl4n3k.lunchtime.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local stand-in for the lunch cam.
+ * <p>
+ * Serves random frames of a training dataset on any path with a configurable latency, latency jitter and
+ * failure rate. Frames are held in memory so that the stub itself does not touch the disk while serving.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@Slf4j
+public class StubLunchCamServer {
+
+    private final List<byte[]> frames;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param datasetDir    directory with {@code *.jpg} frames to serve
+     * @param latencyMillis minimal response latency
+     * @param jitterMillis  maximal random latency added on top of {@code latencyMillis}
+     * @param failureRate   probability in [0-1] that a request fails with HTTP 500
+     */
+    public StubLunchCamServer(File datasetDir, long latencyMillis, long jitterMillis, double failureRate) {
+        this.frames = loadFrames(datasetDir);
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Starts the server on a given {@code port}, {@code 0} picks a free one.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", this::handle);
+        // Sleeping handlers must not block each other.
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Serving {} frames on {}", frames.size(), getUrl());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return String.format("http://localhost:%d/lunchcam.jpg", server.getAddress().getPort());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            if (random.nextDouble() < failureRate) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            byte[] frame = frames.get(random.nextInt(frames.size()));
+            exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, frame.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static List<byte[]> loadFrames(File datasetDir) {
+        List<byte[]> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(datasetDir.toPath(), "*.jpg")) {
+            for (Path path : stream) {
+                result.add(Files.readAllBytes(path));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("No frames found in: " + datasetDir);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        StubLunchCamServer server = new StubLunchCamServer(
+            new File(System.getProperty("dataset", "training_dataset")),
+            Long.getLong("latency", 0),
+            Long.getLong("jitter", 0),
+            Double.parseDouble(System.getProperty("failureRate", "0")));
+        server.start(Integer.getInteger("port", 8081));
+    }
+}
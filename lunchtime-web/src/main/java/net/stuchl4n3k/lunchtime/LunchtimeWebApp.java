@@ -3,15 +3,24 @@ package net.stuchl4n3k.lunchtime;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author petr.stuchlik
  */
 @SpringBootApplication
+@EnableScheduling
 @Slf4j
 public class LunchtimeWebApp {
 
     public static void main(String[] args) throws Exception {
-        SpringApplication.run(LunchtimeWebApp.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(LunchtimeWebApp.class, args);
+
+        // Used to record loaded classes for a Class Data Sharing archive (see the 'cds' build profile).
+        if (context.getEnvironment().getProperty("lunchtime.startup.exit", Boolean.class, false)) {
+            LOG.info("Startup finished, exiting.");
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
@@ -0,0 +1,28 @@
+package net.stuchl4n3k.lunchtime.domain;
+
+import lombok.ToString;
+
+/**
+ * Published whenever the lunch cam classification differs from the previously observed one.
+ *
+ * @author petr.stuchlik
+ */
+@ToString
+public class ClassificationChangedEvent {
+
+    private final ClassificationResult previous;
+    private final ClassificationResult current;
+
+    public ClassificationChangedEvent(ClassificationResult previous, ClassificationResult current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public ClassificationResult getPrevious() {
+        return previous;
+    }
+
+    public ClassificationResult getCurrent() {
+        return current;
+    }
+}
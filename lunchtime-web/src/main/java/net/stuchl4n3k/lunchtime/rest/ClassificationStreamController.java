@@ -0,0 +1,209 @@
+package net.stuchl4n3k.lunchtime.rest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.stuchl4n3k.lunchtime.domain.ClassificationChangedEvent;
+import net.stuchl4n3k.lunchtime.domain.ClassificationResult;
+import net.stuchl4n3k.lunchtime.service.ClassificationMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes classification changes to subscribed clients as Server-Sent Events.
+ * <p>
+ * Subscribers only cost an open connection, all of them are fed from {@link ClassificationMonitor}.
+ * </p>
+ * <p>
+ * The monitor publishes changes from its polling thread, which must never touch an emitter: emitter methods lock
+ * the emitter and may wait for a blocked write. The listener only marks subscribers as outdated and schedules them
+ * on a bounded pool of sender threads. Each subscriber is sent to by at most one thread at a time, and always
+ * the latest result, so clients see changes in order and a slow client skips intermediate states instead of
+ * queueing them.
+ * </p>
+ * <p>
+ * A subscriber whose write fails, whose write has been blocked for more than {@code lunchtime.stream.max-send-time}
+ * milliseconds or which does not fit into a full send queue is dropped and has to reconnect. Dropped emitters are
+ * completed by a sender thread once no write is in progress.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@RestController
+@Slf4j
+public class ClassificationStreamController {
+
+    public static final String EVENT_NAME = "classification";
+
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor sendExecutor;
+
+    @Autowired
+    private ClassificationMonitor classificationMonitor;
+
+    @Value("${lunchtime.stream.timeout:600000}")
+    private long emitterTimeout;
+
+    @Value("${lunchtime.stream.send-threads:4}")
+    private int sendThreads;
+
+    @Value("${lunchtime.stream.send-queue:10000}")
+    private int sendQueueCapacity;
+
+    @Value("${lunchtime.stream.max-send-time:10000}")
+    private long maxSendMillis;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(sendQueueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "sse-send-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sendExecutor.shutdownNow();
+    }
+
+    @RequestMapping("/stream")
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeout);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        subscribers.put(emitter, subscriber);
+
+        // Let the new subscriber know the current state right away, the event is buffered until the response starts.
+        if (classificationMonitor.getCurrent() != null) {
+            update(subscriber);
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onClassificationChanged(ClassificationChangedEvent event) {
+        LOG.debug("Pushing {} to {} subscribers", event, subscribers.size());
+        long now = System.nanoTime();
+        subscribers.values().forEach(subscriber -> {
+            long sendStartNanos = subscriber.sendStartNanos;
+            if (sendStartNanos != 0 && now - sendStartNanos > TimeUnit.MILLISECONDS.toNanos(maxSendMillis)) {
+                drop(subscriber, "write blocked for too long");
+            } else {
+                update(subscriber);
+            }
+        });
+    }
+
+    /**
+     * Marks a given {@code subscriber} as outdated and schedules sending to it unless it is already scheduled.
+     * Never touches the emitter, so it is safe to be called from any thread.
+     */
+    private void update(Subscriber subscriber) {
+        subscriber.outdated.set(true);
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.scheduled.compareAndSet(false, true)) {
+            // The sending thread picks the change up before it lets go of the subscriber.
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> process(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.scheduled.set(false);
+            if (subscribers.remove(subscriber.emitter) != null) {
+                // Completion would need a sender thread as well, the emitter is left to time out.
+                LOG.debug("Dropping subscriber: send queue is full");
+            }
+        }
+    }
+
+    /**
+     * Runs on a sender thread, the only thread touching the emitter of a given {@code subscriber} at the moment.
+     */
+    private void process(Subscriber subscriber) {
+        try {
+            while (!subscriber.dropped && subscriber.outdated.getAndSet(false)) {
+                ClassificationResult result = classificationMonitor.getCurrent();
+                if (result != subscriber.lastSent) {
+                    send(subscriber, result);
+                }
+            }
+            if (subscriber.dropped && !subscriber.completed) {
+                subscriber.completed = true;
+                subscriber.emitter.complete();
+            }
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        // A change or a drop may have come after the checks above but before the subscriber was let go.
+        if (subscriber.dropped ? !subscriber.completed : subscriber.outdated.get()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber, ClassificationResult result) {
+        subscriber.sendStartNanos = System.nanoTime();
+        try {
+            subscriber.emitter.send(SseEmitter.event().name(EVENT_NAME).data(result.toString()));
+            subscriber.lastSent = result;
+        } catch (IOException | IllegalStateException e) {
+            LOG.debug("Dropping subscriber: {}", e.getMessage());
+            subscriber.dropped = true;
+            subscriber.completed = true;
+            subscribers.remove(subscriber.emitter);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.sendStartNanos = 0;
+        }
+    }
+
+    /**
+     * Unsubscribes a given {@code subscriber} without touching its emitter, a sender thread completes it
+     * once its current write (if any) ends.
+     */
+    private void drop(Subscriber subscriber, String reason) {
+        if (subscribers.remove(subscriber.emitter) != null) {
+            LOG.debug("Dropping subscriber: {}", reason);
+            subscriber.dropped = true;
+            schedule(subscriber);
+        }
+    }
+
+    private static class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean outdated = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean dropped;
+        private volatile boolean completed;
+        // System.nanoTime() when the write in progress started, 0 if there is none.
+        private volatile long sendStartNanos;
+        // Only accessed by the sender thread currently processing this subscriber.
+        private ClassificationResult lastSent;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+}
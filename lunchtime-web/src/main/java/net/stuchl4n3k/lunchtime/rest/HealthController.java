@@ -0,0 +1,46 @@
+package net.stuchl4n3k.lunchtime.rest;
+
+import net.stuchl4n3k.lunchtime.service.ClassificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Liveness and readiness probes.
+ * <p>
+ * The application is live as soon as it serves requests until training of the model fails, it is ready once
+ * the model has been trained. A failed training makes the liveness probe fail, so that the application gets
+ * restarted instead of staying unready forever.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@RestController
+@RequestMapping("/health")
+public class HealthController {
+
+    public static final String UP = "UP";
+    public static final String DOWN = "DOWN";
+
+    @Autowired
+    private ClassificationService classificationService;
+
+    @RequestMapping("/live")
+    public ResponseEntity<String> live() {
+        if (classificationService.isFailed()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(DOWN);
+        }
+        return ResponseEntity.ok(UP);
+    }
+
+    @RequestMapping("/ready")
+    public ResponseEntity<String> ready() {
+        if (classificationService.isReady()) {
+            return ResponseEntity.ok(UP);
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(DOWN);
+    }
+
+}
@@ -0,0 +1,18 @@
+package net.stuchl4n3k.lunchtime.service;
+
+import net.stuchl4n3k.lunchtime.domain.ClassificationResult;
+
+/**
+ * Periodically classifies the lunch cam and publishes a
+ * {@link net.stuchl4n3k.lunchtime.domain.ClassificationChangedEvent} whenever the result changes.
+ *
+ * @author petr.stuchlik
+ */
+public interface ClassificationMonitor {
+
+    /**
+     * Returns the most recently observed classification or {@code null} if none is known yet.
+     */
+    ClassificationResult getCurrent();
+
+}
@@ -8,6 +8,21 @@ import net.stuchl4n3k.lunchtime.domain.ClassificationResult;
  */
 public interface ClassificationService {
 
+    /**
+     * Classifies a given lunch cam image {@code file}.
+     *
+     * @throws ModelNotReadyException if the model is still being trained
+     */
     ClassificationResult classify(File file);
 
+    /**
+     * Tells whether the model is trained and {@link #classify(File)} can be called.
+     */
+    boolean isReady();
+
+    /**
+     * Tells whether training of the model failed, so that it will never become ready.
+     */
+    boolean isFailed();
+
 }
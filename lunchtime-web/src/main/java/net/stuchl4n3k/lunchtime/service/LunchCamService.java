@@ -0,0 +1,15 @@
+package net.stuchl4n3k.lunchtime.service;
+
+import java.io.File;
+
+/**
+ * @author petr.stuchlik
+ */
+public interface LunchCamService {
+
+    /**
+     * Downloads the current lunch cam frame to a temporary file and returns it.
+     */
+    File fetchImage();
+
+}
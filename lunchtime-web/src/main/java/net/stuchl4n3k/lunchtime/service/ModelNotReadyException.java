@@ -0,0 +1,17 @@
+package net.stuchl4n3k.lunchtime.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a classification is requested before the model has been trained.
+ *
+ * @author petr.stuchlik
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ModelNotReadyException extends RuntimeException {
+
+    public ModelNotReadyException() {
+        super("The classification model is not ready yet");
+    }
+}
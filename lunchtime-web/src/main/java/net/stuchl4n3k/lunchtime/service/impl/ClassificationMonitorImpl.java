@@ -0,0 +1,74 @@
+package net.stuchl4n3k.lunchtime.service.impl;
+
+import java.io.File;
+import lombok.extern.slf4j.Slf4j;
+import net.stuchl4n3k.lunchtime.domain.ClassificationChangedEvent;
+import net.stuchl4n3k.lunchtime.domain.ClassificationResult;
+import net.stuchl4n3k.lunchtime.service.ClassificationMonitor;
+import net.stuchl4n3k.lunchtime.service.ClassificationService;
+import net.stuchl4n3k.lunchtime.service.LunchCamService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Single producer of lunch cam classifications.
+ * <p>
+ * The camera is fetched and classified once per {@code lunchtime.monitor.interval} milliseconds regardless of
+ * the number of subscribed clients. An event is published only when the result differs from the previous one.
+ * </p>
+ *
+ * @author petr.stuchlik
+ */
+@Service
+@Slf4j
+public class ClassificationMonitorImpl implements ClassificationMonitor {
+
+    @Autowired
+    private ClassificationService classificationService;
+
+    @Autowired
+    private LunchCamService lunchCamService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private volatile ClassificationResult current;
+
+    @Override
+    public ClassificationResult getCurrent() {
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${lunchtime.monitor.interval:30000}")
+    public void poll() {
+        if (!classificationService.isReady()) {
+            LOG.debug("Model not ready yet, skipping lunch cam classification.");
+            return;
+        }
+
+        ClassificationResult result;
+        try {
+            File inputFile = lunchCamService.fetchImage();
+            try {
+                result = classificationService.classify(inputFile);
+            } finally {
+                if (!inputFile.delete()) {
+                    LOG.warn("Could not delete temporary file: {}", inputFile.getAbsolutePath());
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Lunch cam classification failed: {}", e.getMessage());
+            return;
+        }
+
+        ClassificationResult previous = current;
+        if (result != previous) {
+            current = result;
+            LOG.info("Classification changed: {} -> {}", previous, result);
+            eventPublisher.publishEvent(new ClassificationChangedEvent(previous, result));
+        }
+    }
+
+}
@@ -2,18 +2,23 @@ package net.stuchl4n3k.lunchtime.service.impl;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.stuchl4n3k.lunchtime.classifier.ANN;
 import net.stuchl4n3k.lunchtime.classifier.Label;
 import net.stuchl4n3k.lunchtime.classifier.Sample;
 import net.stuchl4n3k.lunchtime.classifier.SampleFactory;
 import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvANN;
+import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvSampleDeduplicator;
 import net.stuchl4n3k.lunchtime.classifier.impl.opencv.CvSampleFactory;
+import net.stuchl4n3k.lunchtime.classifier.util.CvUtils;
 import net.stuchl4n3k.lunchtime.classifier.util.IoUtils;
 import net.stuchl4n3k.lunchtime.domain.ClassificationResult;
 import net.stuchl4n3k.lunchtime.service.ClassificationService;
-import nu.pattern.OpenCV;
+import net.stuchl4n3k.lunchtime.service.ModelNotReadyException;
 import org.opencv.core.Mat;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -31,20 +36,60 @@ import static net.stuchl4n3k.lunchtime.Main.computeErrorRate;
 @Slf4j
 public class ClassificationServiceImpl implements ClassificationService {
 
-    private final ANN ann = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
     private final SampleFactory sampleFactory = new CvSampleFactory();
 
+    // Set once training is done, null until then.
+    private volatile ANN ann;
+
+    // Set if background training failed, the model will never be ready then.
+    private volatile Throwable trainingFailure;
+
+    private ExecutorService trainingExecutor;
+
     @Value("#{'${LUNCHTIME_HOME:}' ?: '${user.home}/lunchtime'}")
     private String lunchtimeHomeDir;
 
-    // Load OpenCV native libraries.
-    static {
-        OpenCV.loadShared();
-        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
-    }
+    @Value("${lunchtime.startup.async:false}")
+    private boolean asyncStartup;
+
+    @Value("${lunchtime.training.dedup-distance:0}")
+    private double dedupDistance;
 
     @PostConstruct
+    public void init() {
+        if (asyncStartup) {
+            LOG.info("Loading the model in background.");
+            trainingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ann-training");
+                thread.setDaemon(true);
+                return thread;
+            });
+            trainingExecutor.submit(() -> {
+                try {
+                    trainAnn();
+                } catch (RuntimeException | Error e) {
+                    // Native library loading fails with an Error, report that as well.
+                    LOG.error("ANN training failed", e);
+                    trainingFailure = e;
+                }
+            });
+            trainingExecutor.shutdown();
+        } else {
+            trainAnn();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (trainingExecutor != null) {
+            trainingExecutor.shutdownNow();
+        }
+    }
+
     public void trainAnn() {
+        // OpenCV has to be loaded before any CvANN is created.
+        CvUtils.loadNativeLibraries();
+
         // Find input files.
         File trainingDatasetDir = new File(lunchtimeHomeDir, "training_dataset");
         if (!trainingDatasetDir.exists()) {
@@ -56,23 +101,50 @@ public class ClassificationServiceImpl implements ClassificationService {
 
         // MLP training.
         LOG.info("ANN training in progress...");
-        inputFiles.forEach(path -> {
-            Sample sample = sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H);
-            ann.addTrainingSample(sample);
-        });
-        int iterationsCounter = ann.train();
+        ANN trainedAnn = new CvANN(NUM_NEURONS_INPUT, NUM_NEURONS_HIDDEN_LAYER, NUM_NEURONS_OUTPUT);
+        if (dedupDistance > 0) {
+            // Only cluster representatives are kept in memory, weighted by the number of frames they stand for.
+            CvSampleDeduplicator deduplicator = new CvSampleDeduplicator(dedupDistance);
+            inputFiles.forEach(path -> deduplicator.add(sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H)));
+            deduplicator.getSamples().forEach(trainedAnn::addTrainingSample);
+            LOG.info("Deduplicated {} training samples to {}", deduplicator.getNumSamples(), deduplicator.getNumClusters());
+        } else {
+            inputFiles.forEach(path -> {
+                Sample sample = sampleFactory.createLabeledSample(path, SAMPLE_W, SAMPLE_H);
+                trainedAnn.addTrainingSample(sample);
+            });
+        }
+        int iterationsCounter = trainedAnn.train();
         LOG.info("Training done after {} iterations", iterationsCounter);
 
         // Compute MLP error rate on train data.
-        double trnErrRate = computeErrorRate(ann, inputFiles);
+        double trnErrRate = computeErrorRate(trainedAnn, inputFiles);
         LOG.info("Error rate on train data: {}", trnErrRate);
+
+        ann = trainedAnn;
     }
 
+    @Override
     public ClassificationResult classify(File file) {
+        ANN ann = this.ann;
+        if (ann == null) {
+            throw new ModelNotReadyException();
+        }
+
         Sample sample = sampleFactory.createSample(file.getAbsolutePath(), SAMPLE_W, SAMPLE_H);
         Label prediction = ann.predict(sample.getFeatures());
         Mat predictionValue = (Mat) prediction.getValue();
         return ClassificationResult.getByNumericClass((int) predictionValue.get(0,0)[0]);
     }
 
+    @Override
+    public boolean isReady() {
+        return ann != null;
+    }
+
+    @Override
+    public boolean isFailed() {
+        return trainingFailure != null;
+    }
+
 }
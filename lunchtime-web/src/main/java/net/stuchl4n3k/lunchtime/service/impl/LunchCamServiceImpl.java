@@ -0,0 +1,50 @@
+package net.stuchl4n3k.lunchtime.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import lombok.extern.slf4j.Slf4j;
+import net.stuchl4n3k.lunchtime.service.LunchCamService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author petr.stuchlik
+ */
+@Service
+@Slf4j
+public class LunchCamServiceImpl implements LunchCamService {
+
+    public static final String LUNCH_CAM_URL = "https://portal.ppf.cz/_layouts/IMAGES/KameraJidelna/Jidelna000M.jpg";
+
+    @Value("${lunchtime.cam.url:" + LUNCH_CAM_URL + "}")
+    private String lunchCamUrl;
+
+    @Value("${lunchtime.cam.timeout:10000}")
+    private int timeout;
+
+    @Override
+    public File fetchImage() {
+        try {
+            Path inputFilePath = Files.createTempFile("lunchcam", null);
+            URLConnection connection = new URL(lunchCamUrl).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            try (InputStream in = connection.getInputStream()) {
+                Files.copy(in, inputFilePath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.delete(inputFilePath);
+                throw e;
+            }
+            return inputFilePath.toFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}